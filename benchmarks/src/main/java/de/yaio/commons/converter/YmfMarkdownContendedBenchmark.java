@@ -0,0 +1,69 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pegdown.JshConfig;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmark of the complete pipeline with one provider shared by all cores (like a web-tier)
+ *
+ * run with "java -jar target/benchmarks.jar YmfMarkdownContendedBenchmark -t 16" to change the count of threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class YmfMarkdownContendedBenchmark {
+    @Param({YmfMarkdownCorpus.NODE, YmfMarkdownCorpus.CODE, YmfMarkdownCorpus.RECORDED})
+    public String corpus;
+
+    /** approximated size of the generated documents in chars */
+    @Param({"4000"})
+    public int size;
+
+    protected YmfMarkdownProvider provider;
+    protected JshConfig config;
+    protected String src;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        provider = new YmfMarkdownProvider();
+        config = new JshConfig();
+        src = YmfMarkdownCorpus.getDocument(corpus, size);
+    }
+
+    @Benchmark
+    public String endToEnd() throws IOException {
+        return provider.convertMarkdownToHtml(config, src);
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * generated and recorded jsh-markdown-documents for the benchmarks
+ *
+ * the generated documents are deterministic (fixed random-seed), so results of different runs are comparable.
+ */
+public class YmfMarkdownCorpus {
+    /** all corpora: use them as names in the benchmark-params */
+    public static final String NODE = "node";
+    public static final String LARGE = "large";
+    public static final String CODE = "code";
+    public static final String NESTED = "nested";
+    public static final String SPLITTER = "splitter";
+    public static final String ABBRTABLES = "abbrtables";
+    public static final String RECORDED = "recorded";
+
+    /** the recorded documents in the resources */
+    protected static final String[] RECORDED_DOCUMENTS = new String[] {
+            "corpus/recorded-project-node.md",
+            "corpus/recorded-howto-node.md"
+    };
+
+    /** all diagramm-prefixes known by the serializer */
+    protected static final String[] CODE_PREFIXES = new String[] {
+            "mermaid", "yaiofreemind", "yaiomindmap", "yaioplantuml", "ymffreemind", "ymfmindmap", "ymfplantuml", ""
+    };
+
+    protected static final String[] WORDS = new String[] {
+            "Projekt", "Aufgabe", "export", "the", "node", "markdown", "render", "and", "with", "Planung",
+            "Release", "server", "parser", "style", "HTML", "CSS", "W3C", "data", "value", "Mindmap"
+    };
+
+    private YmfMarkdownCorpus() {
+    }
+
+    /**
+     * get the document of the corpus
+     * @param name                   name of the corpus
+     * @param size                   approximated size of generated documents in chars
+     * @return                       the markdown-document
+     * @throws IOException           if the recorded documents can not be read
+     */
+    public static String getDocument(String name, int size) throws IOException {
+        Random random = new Random(4711);
+        switch (name) {
+            case NODE:
+                return generateParagraphs(random, Math.min(size, 400));
+            case LARGE:
+                return generateLarge(random, size);
+            case CODE:
+                return generateCode(random, size);
+            case NESTED:
+                return generateNested(random, size);
+            case SPLITTER:
+                return generateSplitter(random, size);
+            case ABBRTABLES:
+                return generateAbbreviationsAndTables(random, size);
+            case RECORDED:
+                return readRecorded();
+            default:
+                throw new IllegalArgumentException("unknown corpus:" + name);
+        }
+    }
+
+    protected static String generateParagraphs(Random random, int size) {
+        StringBuilder res = new StringBuilder(size + 100);
+        while (res.length() < size) {
+            appendSentences(res, random, 3);
+            res.append("\n\n");
+        }
+        return res.toString();
+    }
+
+    protected static String generateLarge(Random random, int size) {
+        StringBuilder res = new StringBuilder(size + 1000);
+        int section = 0;
+        while (res.length() < size) {
+            res.append("## Abschnitt ").append(section++).append("\n\n");
+            appendSentences(res, random, 4);
+            res.append("\n\n- ").append(word(random)).append(" *").append(word(random)).append("*\n- ")
+               .append(word(random)).append(" **").append(word(random)).append("**\n    - ")
+               .append(word(random)).append(" [link](http://www.your-all-in-one.de)\n\n1. ")
+               .append(word(random)).append("\n2. `").append(word(random)).append("`\n\n> ");
+            appendSentences(res, random, 1);
+            res.append("\n\n");
+            appendSentences(res, random, 3);
+            res.append("\n\n");
+        }
+        return res.toString();
+    }
+
+    protected static String generateCode(Random random, int size) {
+        StringBuilder res = new StringBuilder(size + 1000);
+        int block = 0;
+        while (res.length() < size) {
+            appendSentences(res, random, 1);
+            res.append("\n\n```").append(CODE_PREFIXES[block++ % CODE_PREFIXES.length]).append("\n");
+            for (int line = 0; line < 8; line++) {
+                res.append(word(random)).append(" -> ").append(word(random)).append(";\n");
+                if (line == 3) {
+                    res.append("\n");
+                }
+            }
+            res.append("```\n\n");
+        }
+        return res.toString();
+    }
+
+    protected static String generateNested(Random random, int size) {
+        StringBuilder res = new StringBuilder(size + 1000);
+        String[] starts = new String[] {"BOX.INFO Info", "CONTAINER c", "BOX.WARN Warn", "STYLE p li:nested", "BOX myclass"};
+        String[] ends = new String[] {"/BOX.INFO", "/CONTAINER", "/BOX.WARN", "/STYLE p li:nested", "/BOX"};
+        int block = 0;
+        while (res.length() < size) {
+            for (int depth = 0; depth < starts.length; depth++) {
+                res.append("<!---").append(starts[depth]).append(depth == 1 ? "" + block : "").append("--->\n");
+                appendSentences(res, random, 1);
+                res.append("\n\n");
+            }
+            res.append("- ").append(word(random)).append("\n- ").append(word(random)).append("\n\n");
+            for (int depth = starts.length - 1; depth >= 0; depth--) {
+                res.append("<!---").append(ends[depth]).append("--->\n");
+            }
+            res.append("<!---TOGGLER c").append(block).append(",icon--->\n\n");
+            block++;
+        }
+        return res.toString();
+    }
+
+    protected static String generateSplitter(Random random, int size) {
+        StringBuilder res = new StringBuilder(size + 100);
+        while (res.length() < size) {
+            res.append(word(random)).append(" :|: ").append(word(random)).append(' ').append(word(random)).append("\n");
+            if (random.nextInt(5) == 0) {
+                res.append("\n");
+                appendSentences(res, random, 2);
+                res.append("\n\n");
+            }
+        }
+        return res.toString();
+    }
+
+    protected static String generateAbbreviationsAndTables(Random random, int size) {
+        StringBuilder res = new StringBuilder(size + 1000);
+        for (int i = 0; i < 200; i++) {
+            res.append("*[ABBR").append(i).append("]: Abbreviation number ").append(i).append("\n");
+        }
+        res.append("*[HTML]: Hyper Text Markup Language\n*[CSS]: Cascading Style Sheets\n*[W3C]: World Wide Web Consortium\n\n");
+        while (res.length() < size) {
+            appendSentences(res, random, 2);
+            res.append(" ABBR").append(random.nextInt(200)).append(".\n\n| ").append(word(random)).append(" | ")
+               .append(word(random)).append(" | ").append(word(random)).append(" |\n|---|:---:|---:|\n");
+            for (int row = 0; row < 5; row++) {
+                res.append("| ").append(word(random)).append(" | ABBR").append(random.nextInt(200)).append(" | ")
+                   .append(random.nextInt(1000)).append(" |\n");
+            }
+            res.append("\n");
+        }
+        return res.toString();
+    }
+
+    protected static String readRecorded() throws IOException {
+        StringBuilder res = new StringBuilder();
+        for (String document : RECORDED_DOCUMENTS) {
+            InputStream in = YmfMarkdownCorpus.class.getResourceAsStream(document);
+            if (in == null) {
+                throw new IOException("recorded document not found:" + document);
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, read);
+                }
+                res.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8)).append("\n\n");
+            } finally {
+                in.close();
+            }
+        }
+        return res.toString();
+    }
+
+    protected static void appendSentences(StringBuilder res, Random random, int count) {
+        for (int sentence = 0; sentence < count; sentence++) {
+            int words = 6 + random.nextInt(10);
+            for (int i = 0; i < words; i++) {
+                res.append(i == 0 ? "" : " ").append(word(random));
+            }
+            res.append(". ");
+        }
+    }
+
+    protected static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pegdown.Extensions;
+import org.pegdown.JshConfig;
+import org.pegdown.JshElementIdAllocator;
+import org.pegdown.JshPegdownProcessor;
+import org.pegdown.JshPegdownProcessorPool;
+import org.pegdown.JshPegdownToHtmlSerializer;
+import org.pegdown.JshRenderContext;
+import org.pegdown.LinkRenderer;
+import org.pegdown.VerbatimSerializer;
+import org.pegdown.ast.RootNode;
+import org.pegdown.plugins.ToHtmlSerializerPlugin;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * single-threaded benchmarks for every phase of the rendering and the complete pipeline
+ *
+ * run with "java -jar target/benchmarks.jar YmfMarkdownProviderBenchmark -prof gc" to get the allocation-rate too
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YmfMarkdownProviderBenchmark {
+    /** the options used by YmfMarkdownProvider */
+    protected static final int OPTIONS = Extensions.SUPPRESS_ALL_HTML + Extensions.TABLES;
+
+    @Param({YmfMarkdownCorpus.NODE, YmfMarkdownCorpus.LARGE, YmfMarkdownCorpus.CODE, YmfMarkdownCorpus.NESTED,
+            YmfMarkdownCorpus.SPLITTER, YmfMarkdownCorpus.ABBRTABLES, YmfMarkdownCorpus.RECORDED})
+    public String corpus;
+
+    /** approximated size of the generated documents in chars: 500000 is the baseline for the large documents */
+    @Param({"4000", "500000"})
+    public int size;
+
+    protected YmfMarkdownProvider provider;
+    protected JshConfig config;
+    protected JshPegdownProcessor processor;
+
+    protected String src;
+    protected String prepared;
+    protected RootNode astRoot;
+    protected CharSequence html;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        provider = new YmfMarkdownProvider();
+        config = new JshConfig();
+        processor = new JshPegdownProcessorPool().getProcessor(config, OPTIONS);
+
+        src = YmfMarkdownCorpus.getDocument(corpus, size);
+        prepared = provider.prepareTextForMarkdown(src, true);
+        astRoot = processor.parseMarkdown(prepared.toCharArray());
+        html = serialize(astRoot);
+    }
+
+    @Benchmark
+    public String prepare() {
+        return provider.prepareTextForMarkdown(src, true);
+    }
+
+    @Benchmark
+    public RootNode parse() {
+        return processor.parseMarkdown(prepared.toCharArray());
+    }
+
+    @Benchmark
+    public CharSequence serialize() {
+        return serialize(astRoot);
+    }
+
+    @Benchmark
+    public String postProcess() {
+        return provider.postProcessHtml(html, new JshElementIdAllocator());
+    }
+
+    @Benchmark
+    public String endToEnd() throws IOException {
+        return provider.convertMarkdownToHtml(config, src);
+    }
+
+    protected CharSequence serialize(RootNode root) {
+        return new JshPegdownToHtmlSerializer(new JshRenderContext(config), new LinkRenderer(),
+                Collections.<String, VerbatimSerializer>emptyMap(), Collections.<ToHtmlSerializerPlugin>emptyList())
+                .toHtmlBuffer(root);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pegdown.JshConfig;
+import org.pegdown.JshPegdownProcessor;
+import org.pegdown.JshPegdownProcessorPool;
+import org.pegdown.ast.RootNode;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * parse-time for growing documents: the time per char must stay constant (linear parsing)
+ *
+ * compare the scores of the sizes: "java -jar target/benchmarks.jar YmfMarkdownScalingBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YmfMarkdownScalingBenchmark {
+    @Param({YmfMarkdownCorpus.LARGE, YmfMarkdownCorpus.SPLITTER})
+    public String corpus;
+
+    /** approximated size of the generated documents in chars */
+    @Param({"4000", "16000", "64000", "256000", "500000"})
+    public int size;
+
+    protected JshPegdownProcessor processor;
+    protected char[] prepared;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        processor = new JshPegdownProcessorPool().getProcessor(new JshConfig(),
+                YmfMarkdownProviderBenchmark.OPTIONS);
+        prepared = new YmfMarkdownProvider().prepareTextForMarkdown(
+                YmfMarkdownCorpus.getDocument(corpus, size), true).toCharArray();
+    }
+
+    @Benchmark
+    public RootNode parse() {
+        return processor.parseMarkdown(prepared);
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.pegdown.JshConfig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * converts many markdown-documents in parallel (export of a whole project...)
+ *
+ * every worker-thread uses its own pooled processor, the results are returned in input-order
+ * and an error of one document does not affect the others.
+ * only a bounded window of documents is converted at once, so large batches can be streamed
+ * through a ResultHandler without holding all documents and results in memory.
+ */
+public class YmfMarkdownBatchConverter {
+    /** default count of documents in conversion per worker-thread */
+    public static final int DEFAULT_IN_FLIGHT_PER_WORKER = 4;
+
+    protected final YmfMarkdownProvider provider;
+    protected final ExecutorService executor;
+    protected final boolean ownExecutor;
+    protected int maxInFlight = DEFAULT_IN_FLIGHT_PER_WORKER * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * create a converter with an own ForkJoinPool with one worker per core
+     * @param provider               the provider to convert the documents
+     */
+    public YmfMarkdownBatchConverter(YmfMarkdownProvider provider) {
+        this(provider, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * create a converter with an own ForkJoinPool
+     * @param provider               the provider to convert the documents
+     * @param parallelism            count of worker-threads
+     */
+    public YmfMarkdownBatchConverter(YmfMarkdownProvider provider, int parallelism) {
+        this(provider, new ForkJoinPool(parallelism), true);
+        this.maxInFlight = DEFAULT_IN_FLIGHT_PER_WORKER * parallelism;
+    }
+
+    /**
+     * create a converter which uses the executor - it is not shutdown by this converter
+     * @param provider               the provider to convert the documents
+     * @param executor               the executor to run the conversions
+     */
+    public YmfMarkdownBatchConverter(YmfMarkdownProvider provider, ExecutorService executor) {
+        this(provider, executor, false);
+    }
+
+    protected YmfMarkdownBatchConverter(YmfMarkdownProvider provider, ExecutorService executor, boolean ownExecutor) {
+        this.provider = provider;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * set the max count of documents which are converted or waiting for the handler at once
+     * @param maxInFlight            the max count of documents in conversion
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * convert all documents in parallel - the id of every document is used as namespace for its element-ids
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param items                  the documents to convert
+     * @return                       the results in order of the items
+     * @throws InterruptedException  if interrupted while waiting for the results
+     */
+    public List<Result> convertMarkdownToHtml(final JshConfig config, final Iterable<Item> items)
+            throws InterruptedException {
+        final List<Result> results = new ArrayList<>();
+        convertMarkdownToHtml(config, items, new ResultHandler() {
+            @Override
+            public void handle(Result result) {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * convert the documents in parallel and pass the results in order of the items to the handler:
+     * the items are read lazily and at most maxInFlight documents are in conversion at once
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param items                  the documents to convert
+     * @param handler                the handler for the results (called by the calling thread)
+     * @throws InterruptedException  if interrupted while waiting for the results
+     */
+    public void convertMarkdownToHtml(final JshConfig config, final Iterable<Item> items, ResultHandler handler)
+            throws InterruptedException {
+        Deque<Item> windowItems = new ArrayDeque<>();
+        Deque<Future<Result>> window = new ArrayDeque<>();
+        try {
+            for (final Item item : items) {
+                if (window.size() >= maxInFlight) {
+                    handler.handle(takeResult(windowItems.poll(), window.poll()));
+                }
+                window.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return convertItem(config, item);
+                    }
+                }));
+                windowItems.add(item);
+            }
+            while (!window.isEmpty()) {
+                handler.handle(takeResult(windowItems.poll(), window.poll()));
+            }
+        } finally {
+            for (Future<Result> future : window) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * wait for the result of a document - errors of the jvm (OutOfMemoryError...) are rethrown
+     * @param item                   the document
+     * @param future                 the future of its conversion
+     * @return                       the result with html or error
+     * @throws InterruptedException  if interrupted while waiting for the result
+     */
+    protected Result takeResult(Item item, Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return new Result(item.getId(), null, cause);
+        }
+    }
+
+    /**
+     * convert one document and catch its exceptions
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param item                   the document to convert
+     * @return                       the result with html or error
+     */
+    protected Result convertItem(JshConfig config, Item item) {
+        try {
+            String html = provider.convertMarkdownToHtml(config, item.getMarkdown(), createIdNamespace(item.getId()));
+            return new Result(item.getId(), html, null);
+        } catch (Exception ex) {
+            return new Result(item.getId(), null, ex);
+        }
+    }
+
+    /**
+     * create the namespace for the element-ids of a document from its id: all chars except letters and
+     * digits are escaped as -hex-, so the namespace is safe inside of id-attributes and unique per id
+     * @param id                     the id of the document
+     * @return                       the namespace
+     */
+    protected String createIdNamespace(String id) {
+        if (id == null) {
+            return "_";
+        }
+        StringBuilder res = new StringBuilder(id.length() + 1);
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                res.append(c);
+            } else {
+                res.append('-').append(Integer.toHexString(c)).append('-');
+            }
+        }
+        return res.append('_').toString();
+    }
+
+    /**
+     * shutdown the executor if it was created by this converter
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * a document to convert
+     */
+    public static class Item {
+        protected final String id;
+        protected final String markdown;
+
+        public Item(String id, String markdown) {
+            this.id = id;
+            this.markdown = markdown;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getMarkdown() {
+            return markdown;
+        }
+    }
+
+    /**
+     * the result of a converted document: html or error
+     */
+    public static class Result {
+        protected final String id;
+        protected final String html;
+        protected final Throwable error;
+
+        public Result(String id, String html, Throwable error) {
+            this.id = id;
+            this.html = html;
+            this.error = error;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * check if the document was converted: no error and html (no timeout without fallback)
+         * @return                   true if the html is available
+         */
+        public boolean isSuccess() {
+            return error == null && html != null;
+        }
+    }
+
+    /**
+     * handler for the results of a batch
+     */
+    public interface ResultHandler {
+        /**
+         * handle the result of a document
+         * @param result             the result with html or error
+         */
+        void handle(Result result);
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * split the markdown-src at safe top-level block-boundaries, so that the blocks can be rendered separately
+ *
+ * a boundary is a blank line which is not inside a code-seg (```), an open jsh-comment or a
+ * BOX/CONTAINER-directive and which is not followed by a continuation (indented line, quote, list-item).
+ * reference-definitions are document-wide: extract them with extractDefinitionMap and append the definitions
+ * referenced by a block (selectDefinitions) to it.
+ * STYLE-directives only switch the styles of the following blocks and are often not closed, so they are no
+ * ranges: extract them with extractStyleDirectives and prepend them to the following blocks.
+ */
+public class YmfMarkdownBlockSplitter {
+    protected static final String CODE_SEG = "```";
+    protected static final String JSH_START = "<!---";
+    protected static final String JSH_END = "--->";
+    protected static final String[] NESTED_DIRECTIVES = new String[]{"BOX", "CONTAINER"};
+
+    /**
+     * split the src into blocks: the concatenation of the blocks is the src
+     * @param src                    the markdown-src
+     * @return                       the blocks
+     */
+    public List<String> splitBlocks(String src) {
+        List<String> blocks = new ArrayList<>();
+        int[] codeSegs = findCodeSegs(src);
+        int[] directives = findDirectives(src, codeSegs);
+        int directiveIdx = 0;
+        int depth = 0;
+        boolean afterBlankLine = false;
+        int blockStart = 0;
+        int lineStart = 0;
+        while (lineStart < src.length()) {
+            int lineEnd = src.indexOf('\n', lineStart);
+            lineEnd = lineEnd < 0 ? src.length() : lineEnd + 1;
+
+            // track the nesting of the jsh-directives in front of the line
+            boolean commentOpen = false;
+            while (directiveIdx < directives.length && directives[directiveIdx] < lineStart) {
+                commentOpen = directives[directiveIdx + 1] > lineStart;
+                depth = Math.max(0, depth + directives[directiveIdx + 2]);
+                directiveIdx += 3;
+            }
+
+            boolean blank = isBlank(src, lineStart, lineEnd);
+            if (!blank && afterBlankLine && lineStart > blockStart && depth == 0 && !commentOpen
+                    && !isInCodeSeg(codeSegs, lineStart) && !isContinuation(src, lineStart)) {
+                blocks.add(src.substring(blockStart, lineStart));
+                blockStart = lineStart;
+            }
+            afterBlankLine = blank;
+
+            lineStart = lineEnd;
+        }
+        if (blockStart < src.length()) {
+            blocks.add(src.substring(blockStart));
+        }
+        return blocks;
+    }
+
+    /**
+     * extract all reference-definitions ([id]: url "title") of the src
+     * @param src                    the markdown-src
+     * @return                       the definitions separated by blank lines or "" if there are none
+     */
+    public String extractDefinitions(String src) {
+        StringBuilder res = new StringBuilder();
+        int[] codeSegs = findCodeSegs(src);
+        int lineStart = 0;
+        while (lineStart < src.length()) {
+            int lineEnd = src.indexOf('\n', lineStart);
+            lineEnd = lineEnd < 0 ? src.length() : lineEnd + 1;
+            if (isDefinition(src, lineStart, lineEnd) && !isInCodeSeg(codeSegs, lineStart)) {
+                res.append(src, lineStart, lineEnd).append(src.charAt(lineEnd - 1) != '\n' ? "\n\n" : "\n");
+            }
+            lineStart = lineEnd;
+        }
+        return res.toString();
+    }
+
+    /**
+     * extract all reference-definitions of the src by their id - normalized like pegdown does
+     * (without blanks and lowercase)
+     * @param src                    the markdown-src
+     * @return                       the definitions (separated by blank lines) by id in order of the src
+     */
+    public Map<String, String> extractDefinitionMap(String src) {
+        Map<String, String> res = new LinkedHashMap<>();
+        int[] codeSegs = findCodeSegs(src);
+        int lineStart = 0;
+        while (lineStart < src.length()) {
+            int lineEnd = src.indexOf('\n', lineStart);
+            lineEnd = lineEnd < 0 ? src.length() : lineEnd + 1;
+            if (isDefinition(src, lineStart, lineEnd) && !isInCodeSeg(codeSegs, lineStart)) {
+                int idEnd = findDefinitionIdEnd(src, lineStart, lineEnd);
+                String id = normalizeReferenceId(src, src.lastIndexOf('[', idEnd) + 1, idEnd);
+                String definition = src.substring(lineStart, lineEnd) + (src.charAt(lineEnd - 1) != '\n' ? "\n\n" : "\n");
+                String other = res.get(id);
+                res.put(id, other != null ? other + definition : definition);
+            }
+            lineStart = lineEnd;
+        }
+        return res;
+    }
+
+    /**
+     * select the definitions which can be referenced by the block: the content of every [] of the block
+     * is a possible id (links, images and shortcut-references)
+     * @param block                  the block
+     * @param definitions            the definitions of the document by id (extractDefinitionMap)
+     * @return                       the referenced definitions or "" if there are none
+     */
+    public String selectDefinitions(String block, Map<String, String> definitions) {
+        if (definitions.isEmpty()) {
+            return "";
+        }
+        StringBuilder res = new StringBuilder();
+        Set<String> selected = new HashSet<>();
+        List<Integer> openBrackets = new ArrayList<>();
+        for (int pos = 0; pos < block.length(); pos++) {
+            char c = block.charAt(pos);
+            if (c == '[') {
+                openBrackets.add(pos + 1);
+            } else if (c == ']' && !openBrackets.isEmpty()) {
+                String id = normalizeReferenceId(block, openBrackets.remove(openBrackets.size() - 1), pos);
+                String definition = definitions.get(id);
+                if (definition != null && selected.add(id)) {
+                    res.append(definition);
+                }
+            }
+        }
+        return res.toString();
+    }
+
+    /**
+     * normalize the id of a reference like pegdown: without blanks and lowercase
+     * @param src                    the markdown-src
+     * @param start                  start of the id
+     * @param end                    end of the id
+     * @return                       the normalized id
+     */
+    protected String normalizeReferenceId(String src, int start, int end) {
+        StringBuilder res = new StringBuilder(end - start);
+        for (int pos = start; pos < end; pos++) {
+            char c = src.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                res.append(Character.toLowerCase(c));
+            }
+        }
+        return res.toString();
+    }
+
+    /**
+     * extract all STYLE- and /STYLE-directives of the src (outside of code-segs)
+     * @param src                    the markdown-src
+     * @return                       the directives separated by blank lines or "" if there are none
+     */
+    public String extractStyleDirectives(String src) {
+        StringBuilder res = new StringBuilder();
+        int[] codeSegs = findCodeSegs(src);
+        int start = src.indexOf(JSH_START);
+        while (start >= 0) {
+            int end = src.indexOf(JSH_END, start + JSH_START.length());
+            if (end < 0) {
+                break;
+            }
+            end += JSH_END.length();
+            int pos = start + JSH_START.length();
+            if ((src.startsWith("STYLE", pos) || src.startsWith("/STYLE", pos)) && !isInCodeSeg(codeSegs, start)) {
+                res.append(src, start, end).append("\n\n");
+            }
+            start = src.indexOf(JSH_START, end);
+        }
+        return res.toString();
+    }
+
+    /**
+     * build the src to render a block separately: the STYLE-directives of the preceding blocks, the block
+     * and the reference-definitions of the document it references
+     * @param styleDirectives        the STYLE-directives of the preceding blocks
+     * @param block                  the block
+     * @param definitions            the reference-definitions for the block
+     * @return                       the src
+     */
+    public String buildBlockSrc(String styleDirectives, String block, String definitions) {
+        return styleDirectives + block + (definitions.isEmpty() ? "" : "\n\n" + definitions);
+    }
+
+    /**
+     * get the end of the output in front of a block: the linebreak in front of the block depends on it
+     * @param out                    the output rendered before the block
+     * @return                       "" for no output, "\n" if it ends with a linebreak, else " "
+     */
+    public String getPrecedingOutput(CharSequence out) {
+        if (out.length() == 0) {
+            return "";
+        }
+        return out.charAt(out.length() - 1) == '\n' ? "\n" : " ";
+    }
+
+    /**
+     * find the code-segs: like prepareTextForMarkdown a ``` only starts a code-seg if a closing ``` exists
+     * @param src                    the markdown-src
+     * @return                       start- and end-positions of the code-segs
+     */
+    protected int[] findCodeSegs(String src) {
+        List<Integer> positions = new ArrayList<>();
+        int pos = src.indexOf(CODE_SEG);
+        while (pos >= 0) {
+            positions.add(pos);
+            pos = src.indexOf(CODE_SEG, pos + CODE_SEG.length());
+        }
+        int[] res = new int[positions.size() & ~1];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = positions.get(i);
+        }
+        return res;
+    }
+
+    /**
+     * find the jsh-directives outside of the code-segs
+     * @param src                    the markdown-src
+     * @param codeSegs               start- and end-positions of the code-segs
+     * @return                       start, end (behind "---&gt;" or end of src) and nesting-change per directive
+     */
+    protected int[] findDirectives(String src, int[] codeSegs) {
+        List<Integer> directives = new ArrayList<>();
+        int start = src.indexOf(JSH_START);
+        while (start >= 0) {
+            int pos = start + JSH_START.length();
+            if (isInCodeSeg(codeSegs, start)) {
+                start = src.indexOf(JSH_START, pos);
+                continue;
+            }
+            int end = src.indexOf(JSH_END, pos);
+            end = end < 0 ? src.length() : end + JSH_END.length();
+            directives.add(start);
+            directives.add(end);
+            directives.add(getNestingChange(src, pos));
+            start = src.indexOf(JSH_START, end);
+        }
+        int[] res = new int[directives.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = directives.get(i);
+        }
+        return res;
+    }
+
+    /**
+     * check if the position is inside a code-seg (the opening ``` itself is not inside)
+     * @param codeSegs               start- and end-positions of the code-segs
+     * @param pos                    the position
+     * @return                       true if the position is inside a code-seg
+     */
+    protected boolean isInCodeSeg(int[] codeSegs, int pos) {
+        int idx = Arrays.binarySearch(codeSegs, pos);
+        if (idx >= 0) {
+            return idx % 2 == 1;
+        }
+        int before = -idx - 2;
+        if (before < 0) {
+            return false;
+        }
+        return before % 2 == 0 || pos < codeSegs[before] + CODE_SEG.length();
+    }
+
+    /**
+     * get the change of the nesting by the jsh-directive
+     * @param src                    the markdown-src
+     * @param pos                    position of the directive behind "&lt;!---"
+     * @return                       +1 for BOX/CONTAINER/STYLE, -1 for their ends, else 0
+     */
+    protected int getNestingChange(String src, int pos) {
+        int change = 1;
+        if (pos < src.length() && src.charAt(pos) == '/') {
+            change = -1;
+            pos++;
+        }
+        for (String directive : NESTED_DIRECTIVES) {
+            if (src.startsWith(directive, pos)) {
+                return change;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * check if the line continues the block before: indented lines, quotes and list-items
+     * @param src                    the markdown-src
+     * @param lineStart              start of the line
+     * @return                       true if the line can't start a new block
+     */
+    protected boolean isContinuation(String src, int lineStart) {
+        char c = src.charAt(lineStart);
+        if (c == ' ' || c == '\t' || c == '>') {
+            return true;
+        }
+        int pos = lineStart;
+        if (c == '-' || c == '*' || c == '+') {
+            pos++;
+        } else {
+            while (pos < src.length() && Character.isDigit(src.charAt(pos))) {
+                pos++;
+            }
+            if (pos == lineStart || pos >= src.length() || src.charAt(pos) != '.') {
+                return false;
+            }
+            pos++;
+        }
+        return pos < src.length() && (src.charAt(pos) == ' ' || src.charAt(pos) == '\t');
+    }
+
+    /**
+     * find the end of the id of a reference-definition "[id]:" at the start of the line - only the line
+     * is scanned, so lines like "[ ] task" don't search the rest of the document
+     * @param src                    the markdown-src
+     * @param lineStart              start of the line
+     * @param lineEnd                end of the line (after the linebreak)
+     * @return                       position of the "]:" behind the id or -1 if the line starts no definition
+     */
+    protected int findDefinitionIdEnd(String src, int lineStart, int lineEnd) {
+        int pos = lineStart;
+        while (pos < lineEnd && pos - lineStart < 3 && src.charAt(pos) == ' ') {
+            pos++;
+        }
+        if (pos >= lineEnd || src.charAt(pos) != '[') {
+            return -1;
+        }
+        for (int end = pos + 1; end < lineEnd; end++) {
+            char c = src.charAt(end);
+            if (c == '[') {
+                return -1;
+            }
+            if (c == ']') {
+                return end > pos + 1 && end + 1 < lineEnd && src.charAt(end + 1) == ':' ? end : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * check if the line is a complete reference-definition: [id]: url with optional title "", '' or ()
+     * @param src                    the markdown-src
+     * @param lineStart              start of the line
+     * @param lineEnd                end of the line (after the linebreak)
+     * @return                       true if the line is a reference-definition
+     */
+    protected boolean isDefinition(String src, int lineStart, int lineEnd) {
+        int end = findDefinitionIdEnd(src, lineStart, lineEnd);
+        if (end < 0) {
+            return false;
+        }
+
+        // url
+        int pos = skipBlanks(src, end + 2, lineEnd);
+        int urlStart = pos;
+        while (pos < lineEnd && !Character.isWhitespace(src.charAt(pos))) {
+            pos++;
+        }
+        if (pos == urlStart) {
+            return false;
+        }
+
+        // optional title
+        pos = skipBlanks(src, pos, lineEnd);
+        if (pos < lineEnd && !Character.isWhitespace(src.charAt(pos))) {
+            char close = src.charAt(pos) == '(' ? ')' : src.charAt(pos);
+            if (close != '"' && close != '\'' && close != ')') {
+                return false;
+            }
+            int titleEnd = lineEnd;
+            while (titleEnd > pos && Character.isWhitespace(src.charAt(titleEnd - 1))) {
+                titleEnd--;
+            }
+            if (titleEnd - pos < 2 || src.charAt(titleEnd - 1) != close) {
+                return false;
+            }
+            pos = titleEnd;
+        }
+        return isBlank(src, pos, lineEnd);
+    }
+
+    protected int skipBlanks(String src, int pos, int end) {
+        while (pos < end && (src.charAt(pos) == ' ' || src.charAt(pos) == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    protected boolean isBlank(String src, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(src.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded cache for rendering-results keyed by content-hash
+ *
+ * the entries are evicted least-recently-used when the sum of their weights (approximated bytes)
+ * exceeds the max-weight, or when they are older than the time-to-live.
+ * the cache is thread-safe.
+ * @param <V>                    type of the cached values
+ */
+public class YmfMarkdownCache<V> {
+    protected final long maxWeight;
+    protected final long ttlMillis;
+
+    protected final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    protected long weight = 0;
+    protected long hitCount = 0;
+    protected long missCount = 0;
+    protected long evictionCount = 0;
+
+    /**
+     * create a cache
+     * @param maxWeight              max sum of the weights (approximated bytes) of all entries
+     * @param ttlMillis              time-to-live of the entries in ms - 0 for no expiry
+     */
+    public YmfMarkdownCache(long maxWeight, long ttlMillis) {
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * get the value for the key
+     * @param key                    the key
+     * @return                       the value or null if not cached or expired
+     */
+    public synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && ttlMillis > 0 && entry.created + ttlMillis < System.currentTimeMillis()) {
+            removeEntry(key);
+            evictionCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * put the value for the key and evict old entries if the max-weight is exceeded
+     * a value heavier than the max-weight is not cached, but an older value for the key is removed
+     * @param key                    the key
+     * @param value                  the value
+     * @param valueWeight            the weight (approximated bytes) of the value
+     */
+    public synchronized void put(String key, V value, long valueWeight) {
+        removeEntry(key);
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, valueWeight, System.currentTimeMillis()));
+        weight += valueWeight;
+
+        Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Map.Entry<String, Entry<V>> eldest = iterator.next();
+            weight -= eldest.getValue().weight;
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * remove all entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "YmfMarkdownCache{size=" + entries.size() + ", weight=" + weight + "/" + maxWeight
+                + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
+    }
+
+    protected void removeEntry(String key) {
+        Entry<V> old = entries.remove(key);
+        if (old != null) {
+            weight -= old.weight;
+        }
+    }
+
+    /**
+     * a cached value with its weight and creation-time
+     */
+    protected static class Entry<V> {
+        protected final V value;
+        protected final long weight;
+        protected final long created;
+
+        protected Entry(V value, long weight, long created) {
+            this.value = value;
+            this.weight = weight;
+            this.created = created;
+        }
+    }
+}
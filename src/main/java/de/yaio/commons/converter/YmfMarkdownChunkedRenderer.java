@@ -0,0 +1,329 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.pegdown.JshConfig;
+import org.pegdown.JshElementIdAllocator;
+import org.pegdown.JshParsedDocument;
+import org.pegdown.JshRenderContext;
+import org.pegdown.JshRenderListener;
+import org.pegdown.JshRenderListenerAdapter;
+import org.pegdown.JshRenderMetrics;
+import org.pegdown.JshRenderOutline;
+import org.pegdown.JshTocMode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * renders very large documents (imports, wiki-exports...) in chunks which are parsed in parallel
+ *
+ * the document is split by the YmfMarkdownBlockSplitter at safe top-level boundaries (not in code-segs,
+ * BOX/CONTAINER-ranges or list-continuations) and the blocks are grouped into chunks of about
+ * chunkSize chars. every chunk gets the reference-definitions it references and the STYLE-directives of
+ * the preceding chunks, so links and styles are the same as in a complete rendering.
+ * only the parsing is parallel: the chunks are parsed by the executor, every one with its own
+ * parsing-timeout. the serialization to html and the postprocessing are sequential on the calling thread,
+ * in order and with one allocator for the element-ids, so the ids are the same as in a complete rendering.
+ * the calling thread parses the chunks which are not started yet itself, so it can't deadlock if it is a
+ * worker of the executor (batch-converter, render-service...).
+ * the metrics of the chunks are added to the metrics of the document, so the render-listener gets one
+ * renderFinished per document (with the input- and output-length of the complete document).
+ * with JshTocMode.SERVER the TOCs list the headings of the complete document, so it is rendered at once.
+ */
+public class YmfMarkdownChunkedRenderer {
+    /** default size of the chunks in chars */
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024;
+
+    protected final YmfMarkdownProvider provider;
+    protected final ExecutorService executor;
+    protected final boolean ownExecutor;
+    protected YmfMarkdownBlockSplitter splitter = new YmfMarkdownBlockSplitter();
+    protected int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * create a renderer with an own ForkJoinPool with one worker per core
+     * @param provider               the provider to render the chunks
+     */
+    public YmfMarkdownChunkedRenderer(YmfMarkdownProvider provider) {
+        this(provider, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * create a renderer with an own ForkJoinPool
+     * @param provider               the provider to render the chunks
+     * @param parallelism            count of worker-threads
+     */
+    public YmfMarkdownChunkedRenderer(YmfMarkdownProvider provider, int parallelism) {
+        this(provider, new ForkJoinPool(parallelism), true);
+    }
+
+    /**
+     * create a renderer which uses the executor - it is not shutdown by this renderer
+     * @param provider               the provider to render the chunks
+     * @param executor               the executor to render the chunks
+     */
+    public YmfMarkdownChunkedRenderer(YmfMarkdownProvider provider, ExecutorService executor) {
+        this(provider, executor, false);
+    }
+
+    protected YmfMarkdownChunkedRenderer(YmfMarkdownProvider provider, ExecutorService executor,
+                                         boolean ownExecutor) {
+        this.provider = provider;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * render the document in chunks (parsed in parallel, serialized in order) and append the html to the output
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering of a chunk failed (timeout without fallback)
+     *                               and nothing was appended
+     * @throws IOException           possible Exception while rendering or appending
+     */
+    public boolean convertMarkdownToHtml(JshConfig config, String descText, String idNamespace,
+                                         Appendable out) throws IOException {
+        return convertMarkdownToHtml(config, descText, idNamespace, out, null);
+    }
+
+    /**
+     * render the document in chunks (parsed in parallel, serialized in order), append the html to the output
+     * and collect the outline
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @param out                    the output to append the html to
+     * @param outline                the outline to add the elements of all chunks to or null
+     * @return                       false if the rendering of a chunk failed (timeout without fallback)
+     *                               and nothing was appended
+     * @throws IOException           possible Exception while rendering or appending
+     */
+    public boolean convertMarkdownToHtml(final JshConfig config, String descText, final String idNamespace,
+                                         Appendable out, JshRenderOutline outline) throws IOException {
+        final List<String> chunks = config != null && config.getTocMode() == JshTocMode.SERVER
+                ? Collections.singletonList(descText) : splitChunks(descText);
+        if (chunks.size() < 2) {
+            JshRenderContext context = provider.createRenderContext(config, idNamespace);
+            context.setOutline(outline);
+            return provider.renderMarkdownToHtml(context, descText, out);
+        }
+
+        // every chunk gets the definitions it references and the STYLE-directives of the preceding chunks
+        final Map<String, String> definitions = splitter.extractDefinitionMap(descText);
+        final List<String> chunkSrcs = new ArrayList<>(chunks.size());
+        StringBuilder styleDirectives = new StringBuilder();
+        for (String chunk : chunks) {
+            chunkSrcs.add(splitter.buildBlockSrc(styleDirectives.toString(), chunk,
+                    splitter.selectDefinitions(chunk, definitions)));
+            styleDirectives.append(splitter.extractStyleDirectives(chunk));
+        }
+
+        // the metrics of the chunks are added to the metrics of the document: the listener gets one report
+        final JshElementIdAllocator idAllocator = new JshElementIdAllocator(idNamespace);
+        JshRenderContext documentContext = provider.createRenderContext(config, idAllocator);
+        documentContext.setOutline(outline);
+        boolean ownMetrics = documentContext.startMetrics(descText.length());
+        JshRenderListener chunkListener = ownMetrics
+                ? new ChunkMetricsListener(documentContext) : JshRenderListener.NONE;
+        YmfMarkdownProvider.CountingAppendable countingOut = new YmfMarkdownProvider.CountingAppendable(out);
+        try {
+            return renderChunks(config, chunkSrcs, idAllocator, chunkListener, documentContext, countingOut);
+        } finally {
+            if (ownMetrics) {
+                documentContext.finishMetrics(countingOut.count);
+            }
+        }
+    }
+
+    /**
+     * parse the chunks in parallel, serialize them in order and postprocess the merged html
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param chunkSrcs              the srcs of the chunks with definitions and STYLE-directives
+     * @param idAllocator            the allocator for the element-ids of the document
+     * @param chunkListener          the listener for the metrics of the chunks
+     * @param documentContext        the context of the document for the postprocessing
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering of a chunk failed (timeout without fallback)
+     *                               and nothing was appended
+     * @throws IOException           possible Exception while rendering or appending
+     */
+    protected boolean renderChunks(JshConfig config, final List<String> chunkSrcs,
+                                   JshElementIdAllocator idAllocator, JshRenderListener chunkListener,
+                                   JshRenderContext documentContext, Appendable out) throws IOException {
+        // parse in parallel: the calling thread parses the chunks not started by the executor itself,
+        // so it never waits for a queued chunk - also if it is a worker of the executor
+        final JshRenderContext[] contexts = new JshRenderContext[chunkSrcs.size()];
+        List<FutureTask<JshParsedDocument>> tasks = new ArrayList<>(chunkSrcs.size());
+        for (int i = 0; i < chunkSrcs.size(); i++) {
+            final int chunkIdx = i;
+            contexts[i] = new JshRenderContext(config, idAllocator);
+            contexts[i].setListener(chunkListener);
+            contexts[i].setOutline(documentContext.getOutline());
+            contexts[i].startMetrics(chunkSrcs.get(i).length());
+            tasks.add(new FutureTask<>(new Callable<JshParsedDocument>() {
+                @Override
+                public JshParsedDocument call() {
+                    return provider.parseUnlessSlow(contexts[chunkIdx], chunkSrcs.get(chunkIdx));
+                }
+            }));
+        }
+        try {
+            for (FutureTask<JshParsedDocument> task : tasks) {
+                executor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            // the calling thread parses the rest
+        }
+
+        // serialize in order: the ids continue like in a complete rendering and every chunk continues
+        // after the output of its predecessor. the merged html is postprocessed at once, so the heading-ids
+        // are allocated after the other ids like in a complete rendering
+        StringBuilder html = new StringBuilder(chunkSrcs.size() * chunkSize * 2 + 64);
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                FutureTask<JshParsedDocument> task = tasks.get(i);
+                task.run();
+                JshParsedDocument document = getResult(task);
+                JshRenderContext context = contexts[i];
+                context.setPrecedingOutput(splitter.getPrecedingOutput(html));
+                int chunkStart = html.length();
+                boolean rendered = provider.renderParsedToRawHtml(context, chunkSrcs.get(i), document, html);
+                if (context.getMetrics() != null) {
+                    context.finishMetrics(html.length() - chunkStart);
+                }
+                if (!rendered) {
+                    return false;
+                }
+            }
+            provider.postProcessHtml(documentContext, html, out);
+        } finally {
+            for (FutureTask<JshParsedDocument> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * split the src into chunks of about chunkSize chars at the block-boundaries
+     * @param descText               the src of the markdown
+     * @return                       the chunks
+     */
+    protected List<String> splitChunks(String descText) {
+        List<String> chunks = new ArrayList<>();
+        if (descText.length() <= chunkSize) {
+            chunks.add(descText);
+            return chunks;
+        }
+
+        StringBuilder chunk = new StringBuilder(chunkSize + 1024);
+        for (String block : splitter.splitBlocks(descText)) {
+            chunk.append(block);
+            if (chunk.length() >= chunkSize) {
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+            }
+        }
+        if (chunk.length() > 0) {
+            chunks.add(chunk.toString());
+        }
+        return chunks;
+    }
+
+    protected JshParsedDocument getResult(Future<JshParsedDocument> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while rendering the chunks");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("rendering of a chunk failed", cause);
+        }
+    }
+
+    /**
+     * adds the metrics of the chunks to the metrics of the document and forwards their parsing-timeouts
+     */
+    protected static class ChunkMetricsListener extends JshRenderListenerAdapter {
+        protected final JshRenderContext documentContext;
+
+        protected ChunkMetricsListener(JshRenderContext documentContext) {
+            this.documentContext = documentContext;
+        }
+
+        @Override
+        public void parsingTimeout(JshRenderContext context, JshRenderMetrics metrics) {
+            documentContext.getListener().parsingTimeout(documentContext, metrics);
+        }
+
+        @Override
+        public synchronized void renderFinished(JshRenderContext context, JshRenderMetrics metrics) {
+            documentContext.getMetrics().add(metrics);
+        }
+    }
+
+    /**
+     * shutdown the executor if it was created by this renderer
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * set the size of the chunks: smaller chunks distribute better, larger chunks repeat the
+     * definitions and STYLE-directives less often
+     * @param chunkSize              the size in chars
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public YmfMarkdownBlockSplitter getSplitter() {
+        return splitter;
+    }
+
+    public void setSplitter(YmfMarkdownBlockSplitter splitter) {
+        this.splitter = splitter;
+    }
+}
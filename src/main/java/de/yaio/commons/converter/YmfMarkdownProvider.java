@@ -16,165 +16,946 @@ package de.yaio.commons.converter;
 import de.yaio.commons.data.DataUtils;
 import org.pegdown.Extensions;
 import org.pegdown.JshConfig;
+import org.pegdown.JshDigest;
+import org.pegdown.JshElementIdAllocator;
+import org.pegdown.JshFallbackRenderer;
+import org.pegdown.JshParsedDocument;
 import org.pegdown.JshPegdownProcessor;
-import org.pegdown.PegDownProcessor;
-import org.pegdown.plugins.PegDownPlugins;
+import org.pegdown.JshPegdownProcessorPool;
+import org.pegdown.JshPrescanner;
+import org.pegdown.JshRenderContext;
+import org.pegdown.JshRenderListener;
+import org.pegdown.JshRenderMetrics;
+import org.pegdown.JshRenderOutline;
+import org.pegdown.JshRenderPhase;
+import org.pegdown.LinkRenderer;
+import org.pegdown.VerbatimSerializer;
+import org.pegdown.plugins.ToHtmlSerializerPlugin;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
 /** 
  * services to convert markdown to html
  */
 public class YmfMarkdownProvider {
-    private static int htmlElementId = 1;
+    /** the parsers are expensive to create, so reuse them per thread */
+    protected static final JshPegdownProcessorPool processorPool = new JshPegdownProcessorPool();
+    /** the pegdown-extensions: the parsed documents only depend on them and the src */
+    protected static final int PEGDOWN_OPTIONS = Extensions.SUPPRESS_ALL_HTML + Extensions.TABLES;
+    /** default size in chars from which documents are rendered in chunks */
+    public static final int DEFAULT_LARGE_DOCUMENT_THRESHOLD = 256 * 1024;
+    /** count of hex-chars of the digest of the src used in the default id-namespace */
+    protected static final int NAMESPACE_DIGEST_LENGTH = 12;
 
-    protected String CONST_PATTERN_SEG_CODE = "[\\p{L}\\p{M}\\{Z}\\p{S}\\p{N}\\p{P}\\p{Print}\\{Punct}\\p{Graph}\\p{Blank}\\n\\r]";
+    /** optional cache for the rendered html */
+    protected YmfMarkdownCache<String> renderCache;
+    /** optional cache for the parsed documents: shared by the renderings with different configs */
+    protected YmfMarkdownCache<JshParsedDocument> parseCache;
+    /** renderer for documents which ran into the parsing-timeout - null to return null for them */
+    protected JshFallbackRenderer fallbackRenderer = new JshFallbackRenderer();
+    /** documents which ran into the parsing-timeout: they are rendered with the fallback without parsing */
+    protected YmfSlowDocumentRegistry slowDocuments = new YmfSlowDocumentRegistry();
+    /** listener for the metrics of the renderings */
+    protected JshRenderListener renderListener = JshRenderListener.NONE;
+    /** parse the jsh-nodes as flyweights with offsets into the shared src */
+    protected boolean flyweightNodes = true;
+    /** scan for pathological shapes in front of the parser - null to parse all documents */
+    protected JshPrescanner prescanner = new JshPrescanner();
+    /** renderer for very large documents in parallel chunks - null to render them in one piece */
+    protected YmfMarkdownChunkedRenderer chunkedRenderer;
+    /** documents longer than this are rendered by the chunkedRenderer */
+    protected int largeDocumentThreshold = DEFAULT_LARGE_DOCUMENT_THRESHOLD;
+
+    public YmfMarkdownCache<String> getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * set the cache for the rendered html - null to disable caching.
+     * the html is cached by src, settings and id-namespace: the calls without namespace use the namespace
+     * derived from the src, so they hit the cache too
+     * @param renderCache            the cache
+     */
+    public void setRenderCache(YmfMarkdownCache<String> renderCache) {
+        this.renderCache = renderCache;
+    }
+
+    public YmfMarkdownCache<JshParsedDocument> getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * set the cache for the parsed documents - null to disable caching.
+     * the documents are cached by the digest of the src and shared by all configs, so a document
+     * rendered for different frontends (style-prefix, appBaseVarName...) is parsed only once
+     * @param parseCache             the cache
+     */
+    public void setParseCache(YmfMarkdownCache<JshParsedDocument> parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    public JshFallbackRenderer getFallbackRenderer() {
+        return fallbackRenderer;
+    }
+
+    /**
+     * set the renderer for documents which ran into the parsing-timeout - null to return null for them
+     * @param fallbackRenderer       the renderer
+     */
+    public void setFallbackRenderer(JshFallbackRenderer fallbackRenderer) {
+        this.fallbackRenderer = fallbackRenderer;
+    }
+
+    public YmfSlowDocumentRegistry getSlowDocuments() {
+        return slowDocuments;
+    }
+
+    public void setSlowDocuments(YmfSlowDocumentRegistry slowDocuments) {
+        this.slowDocuments = slowDocuments;
+    }
+
+    public boolean isFlyweightNodes() {
+        return flyweightNodes;
+    }
+
+    /**
+     * set the mode of the jsh-nodes: flyweights with offsets into the shared src (pays off for documents
+     * with many directives) or with copies of their texts
+     * @param flyweightNodes         use flyweight-nodes
+     */
+    public void setFlyweightNodes(boolean flyweightNodes) {
+        this.flyweightNodes = flyweightNodes;
+    }
+
+    public JshPrescanner getPrescanner() {
+        return prescanner;
+    }
+
+    /**
+     * set the scan in front of the parser: it neutralizes unclosed jsh-directives and consecutive
+     * splitter-lines and sends documents with deeply nested inlines to the fallback-renderer
+     * (the findings are reported by the metrics)
+     * @param prescanner             the prescanner (null to parse all documents unchanged)
+     */
+    public void setPrescanner(JshPrescanner prescanner) {
+        this.prescanner = prescanner;
+    }
+
+    public YmfMarkdownChunkedRenderer getChunkedRenderer() {
+        return chunkedRenderer;
+    }
+
+    /**
+     * set the renderer for very large documents: they are split into chunks which are parsed in parallel
+     * and each with its own parsing-timeout (the element-ids differ from a rendering in one piece)
+     * @param chunkedRenderer        the renderer (null to render all documents in one piece)
+     */
+    public void setChunkedRenderer(YmfMarkdownChunkedRenderer chunkedRenderer) {
+        this.chunkedRenderer = chunkedRenderer;
+    }
+
+    public int getLargeDocumentThreshold() {
+        return largeDocumentThreshold;
+    }
+
+    public void setLargeDocumentThreshold(int largeDocumentThreshold) {
+        this.largeDocumentThreshold = largeDocumentThreshold;
+    }
+
+    public JshRenderListener getRenderListener() {
+        return renderListener;
+    }
+
+    /**
+     * set the listener for the metrics of the renderings (durations of the phases, sizes, timeouts)
+     * @param renderListener         the listener (JshRenderListener.NONE to disable the metrics)
+     */
+    public void setRenderListener(JshRenderListener renderListener) {
+        this.renderListener = renderListener;
+    }
+
+    /**
+     * create the context for one rendering with the listener of this provider
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @return                       the context
+     */
+    public JshRenderContext createRenderContext(JshConfig config, String idNamespace) {
+        return createRenderContext(config, new JshElementIdAllocator(idNamespace));
+    }
+
+    /**
+     * create the context for one rendering with the listener of this provider
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param idAllocator            the allocator for the element-ids (shared by the parts of a document)
+     * @return                       the context
+     */
+    public JshRenderContext createRenderContext(JshConfig config, JshElementIdAllocator idAllocator) {
+        JshRenderContext context = new JshRenderContext(config, idAllocator);
+        context.setListener(renderListener);
+        return context;
+    }
+
+    /**
+     * generate the default id-namespace of the src: it is derived from the content, so identical src
+     * gets identical ids and different documents on the same page get different ids
+     * @param descText               the src of the markdown
+     * @return                       the namespace
+     */
+    public String createIdNamespace(String descText) {
+        return "d" + JshDigest.digest(descText).substring(0, NAMESPACE_DIGEST_LENGTH) + "_";
+    }
 
     /**
      * generate and export html from markdown
+     * the element-ids are allocated in the namespace derived from the content by createIdNamespace, so
+     * identical src gives identical html and they are unique if different documents are rendered into
+     * the same page - use the variant with idNamespace if the same src is rendered more than once per page
      * @param config            the jsh-configuration for style-prefix and appBaseName...
      * @param descText               the src of the markdown
      * @throws IOException           possible Exception
      */
     public String convertMarkdownToHtml(JshConfig config, String descText) throws IOException {
-        // prepare descText
-        String newDescText = this.prepareTextForMarkdown(descText);
-        newDescText = newDescText.replaceAll("…", "...");
+        return convertMarkdownToHtml(config, descText, createIdNamespace(descText));
+    }
+
+    /**
+     * generate and export html from markdown
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @throws IOException           possible Exception
+     */
+    public String convertMarkdownToHtml(JshConfig config, String descText, String idNamespace) throws IOException {
+        YmfMarkdownCache<String> cache = renderCache;
+        String cacheKey = null;
+        if (cache != null) {
+            cacheKey = JshDigest.digest(descText, config.getFingerprint(), getRenderFingerprint(), idNamespace);
+            String html = cache.get(cacheKey);
+            if (html != null) {
+                return html;
+            }
+        }
+
+        StringBuilder out = new StringBuilder(descText.length() * 2 + 64);
+        if (!renderMarkdownToHtml(config, descText, idNamespace, out)) {
+            return null;
+        }
+        String html = out.toString();
+        if (cache != null) {
+            cache.put(cacheKey, html, 2L * (html.length() + cacheKey.length()));
+        }
+
+        return html;
+    }
+
+    /**
+     * generate html from markdown and append it to the output (writer of the response...)
+     * without building the complete html as string - the serializer still holds the serialized html
+     * in its buffer until it is appended, so the peak memory is the same like for the string-variant
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering failed (timeout without fallback) and nothing was appended
+     * @throws IOException           possible Exception while appending
+     */
+    public boolean convertMarkdownToHtml(JshConfig config, String descText, String idNamespace, Appendable out)
+            throws IOException {
+        if (renderCache != null) {
+            String html = convertMarkdownToHtml(config, descText, idNamespace);
+            if (html == null) {
+                return false;
+            }
+            out.append(html);
+            return true;
+        }
+
+        return renderMarkdownToHtml(config, descText, idNamespace, out);
+    }
+
+    /**
+     * generate html from markdown together with the outline of the document (diagrams, headings,
+     * TOC-placeholders, togglers and containers) collected while rendering - the render-cache is not used.
+     * all headings get element-ids for the outline, also the ones with a style-class
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @return                       html and outline or null if the rendering failed (timeout without fallback)
+     * @throws IOException           possible Exception
+     */
+    public YmfMarkdownRenderResult convertMarkdownToHtmlWithOutline(JshConfig config, String descText,
+                                                                    String idNamespace) throws IOException {
+        JshRenderOutline outline = new JshRenderOutline();
+        StringBuilder out = new StringBuilder(descText.length() * 2 + 64);
+        YmfMarkdownChunkedRenderer chunked = chunkedRenderer;
+        boolean rendered;
+        if (chunked != null && descText.length() > largeDocumentThreshold) {
+            rendered = chunked.convertMarkdownToHtml(config, descText, idNamespace, out, outline);
+        } else {
+            JshRenderContext context = createRenderContext(config, idNamespace);
+            context.setOutline(outline);
+            rendered = renderMarkdownToHtml(context, descText, out);
+        }
+        return rendered ? new YmfMarkdownRenderResult(out.toString(), outline) : null;
+    }
+
+    /**
+     * parse the markdown once to render it with different configs by convertParsedToHtml
+     * @param descText               the src of the markdown
+     * @return                       the parsed document (from the parse-cache if set) or null on parsing-timeout
+     *                               or pathological input
+     */
+    public JshParsedDocument parseMarkdown(String descText) {
+        return parseMarkdown(null, descText, null);
+    }
+
+    /**
+     * generate html from a parsed document: the document is not changed, so it can be rendered
+     * with different configs and by many threads at once
+     * @param document               the parsed document
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @return                       the html
+     * @throws IOException           possible Exception
+     */
+    public String convertParsedToHtml(JshParsedDocument document, JshConfig config, String idNamespace)
+            throws IOException {
+        JshRenderContext context = createRenderContext(config, idNamespace);
+        StringBuilder out = new StringBuilder(document.getSourceLength() * 2 + 64);
+        boolean ownMetrics = context.startMetrics(document.getSourceLength());
+        try {
+            serializeToHtml(context, document, out);
+        } finally {
+            if (ownMetrics) {
+                context.finishMetrics(out.length());
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * create a session to render a document incrementally while it is edited
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @return                       the session for the document
+     */
+    public YmfMarkdownRenderSession createRenderSession(JshConfig config, String idNamespace) {
+        return new YmfMarkdownRenderSession(this, config, idNamespace);
+    }
+
+    /**
+     * render html from markdown without cache and append it to the output
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering failed (timeout without fallback) and nothing was appended
+     * @throws IOException           possible Exception while appending
+     */
+    protected boolean renderMarkdownToHtml(JshConfig config, String descText, String idNamespace, Appendable out)
+            throws IOException {
+        YmfMarkdownChunkedRenderer chunked = chunkedRenderer;
+        if (chunked != null && descText.length() > largeDocumentThreshold) {
+            return chunked.convertMarkdownToHtml(config, descText, idNamespace, out);
+        }
+        return renderMarkdownToHtml(createRenderContext(config, idNamespace), descText, out);
+    }
+
+    /**
+     * render html from markdown without cache and append it to the output
+     * @param context                the context of the rendering with config and element-ids
+     * @param descText               the src of the markdown
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering failed (timeout without fallback) and nothing was appended
+     * @throws IOException           possible Exception while appending
+     */
+    protected boolean renderMarkdownToHtml(JshRenderContext context, String descText, Appendable out)
+            throws IOException {
+        if (!context.startMetrics(descText.length())) {
+            return renderMarkdownToHtml(context, descText, out, context.getMetrics());
+        }
+
+        // this rendering collects the metrics: count the output
+        CountingAppendable countingOut = new CountingAppendable(out);
+        try {
+            return renderMarkdownToHtml(context, descText, countingOut, context.getMetrics());
+        } finally {
+            context.finishMetrics(countingOut.count);
+        }
+    }
+
+    /**
+     * render html from markdown without cache and append it to the output
+     * @param context                the context of the rendering with config and element-ids
+     * @param descText               the src of the markdown
+     * @param out                    the output to append the html to
+     * @param metrics                the metrics to add the durations to or null if they are not collected
+     * @return                       false if the rendering failed (timeout without fallback) and nothing was appended
+     * @throws IOException           possible Exception while appending
+     */
+    protected boolean renderMarkdownToHtml(JshRenderContext context, String descText, Appendable out,
+                                           JshRenderMetrics metrics) throws IOException {
+        return renderParsedToHtml(context, descText, parseUnlessSlow(context, descText), out);
+    }
+
+    /**
+     * prepare the src and parse it, if it is not registered as slow document
+     * @param context                the context to report the metrics to or null
+     * @param descText               the src of the markdown
+     * @return                       the parsed document or null if it is rendered by the fallback (known slow
+     *                               document, parsing-timeout or safe path of the prescan)
+     */
+    protected JshParsedDocument parseUnlessSlow(JshRenderContext context, String descText) {
+        // known slow documents skip the parser
+        YmfSlowDocumentRegistry slow = fallbackRenderer != null ? slowDocuments : null;
+        String digest = null;
+        if (slow != null && !slow.isEmpty()) {
+            digest = digestSource(descText);
+            if (slow.contains(digest)) {
+                return null;
+            }
+        }
+        return parseMarkdown(context, descText, digest);
+    }
+
+    /**
+     * render the document parsed by parseUnlessSlow or the src by the fallback and append it to the output
+     * @param context                the context of the rendering with config and element-ids
+     * @param descText               the src of the markdown
+     * @param document               the parsed document or null to render the src by the fallback
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering failed (timeout without fallback) and nothing was appended
+     * @throws IOException           possible Exception while appending
+     */
+    protected boolean renderParsedToHtml(JshRenderContext context, String descText, JshParsedDocument document,
+                                         Appendable out) throws IOException {
+        if (document == null) {
+            JshFallbackRenderer fallback = fallbackRenderer;
+            if (fallback == null) {
+                return false;
+            }
+            return renderFallback(fallback, context, prepareMarkdown(context, descText), out);
+        }
 
-        newDescText = processMarkdownPegdown(config, newDescText);
-        newDescText = newDescText.replaceAll("…", "...");
-        newDescText = newDescText.replaceAll("&mdash;", "---");
+        serializeToHtml(context, document, out);
+        return true;
+    }
 
-        // add id to heading
-        newDescText = replaceDiagrammPattern(newDescText,
-                "<h([0-9]*)>",
-                "<h$1 id=\"heading_",
-                "\">").toString();
+    /**
+     * prepare the src and parse it - use the parse-cache if set
+     * documents which run into the parsing-timeout are added to the registry of slow documents,
+     * documents which the prescan sends to the safe path are not: they are detected by the prescan again
+     * @param context                the context to report the metrics to or null
+     * @param descText               the src of the markdown
+     * @param digest                 the digest of the src by digestSource or null if not calculated yet
+     * @return                       the parsed document or null on parsing-timeout or if the prescan sends the
+     *                               document to the safe path
+     */
+    protected JshParsedDocument parseMarkdown(JshRenderContext context, String descText, String digest) {
+        YmfMarkdownCache<JshParsedDocument> cache = parseCache;
+        if (cache != null) {
+            digest = digest != null ? digest : digestSource(descText);
+            JshParsedDocument document = cache.get(digest);
+            if (document != null) {
+                return document;
+            }
+        }
 
-        // reescape > and replace markdown-hack "."
-        newDescText = newDescText.replaceAll("&amp;gt;", "&gt;");
-        newDescText = newDescText.replaceAll("\n\\.\n", "\n");
+        CharSequence newDescText = prepareMarkdown(context, descText);
+        JshPrescanner.Result scan = prescanMarkdown(context, newDescText);
+        if (scan != null) {
+            if (scan.isSafePath()) {
+                return null;
+            }
+            newDescText = scan.getSource();
+        }
+        JshPegdownProcessor pegdown = processorPool.getProcessor(context != null ? context.getConfig() : null,
+                PEGDOWN_OPTIONS);
+        pegdown.setFlyweightNodes(flyweightNodes);
+        JshParsedDocument document = pegdown.parseDocument(newDescText, context);
+        if (document == null) {
+            YmfSlowDocumentRegistry slow = fallbackRenderer != null ? slowDocuments : null;
+            if (slow != null) {
+                slow.add(digest != null ? digest : digestSource(descText));
+            }
+            return null;
+        }
+        if (cache != null) {
+            cache.put(digest, document, document.getWeight() + 2L * digest.length());
+        }
+        return document;
+    }
 
+    /**
+     * the digest of the src for the parse-cache and the registry of slow documents: it contains the settings
+     * of the prescanner, because they change the parsed document
+     * @param descText               the src of the markdown
+     * @return                       the digest
+     */
+    protected String digestSource(String descText) {
+        JshPrescanner scanner = prescanner;
+        return JshDigest.digest(descText, scanner != null ? scanner.getFingerprint() : null);
+    }
+
+    /**
+     * the fingerprint of the settings of this provider which change the rendered html (prescanner,
+     * fallback-renderer, chunked rendering) - to use in the keys of the render-cache
+     * @return                       the settings as string
+     */
+    protected String getRenderFingerprint() {
+        JshPrescanner scanner = prescanner;
+        return "prescan=" + (scanner != null ? scanner.getFingerprint() : "off")
+                + ",fallback=" + (fallbackRenderer != null)
+                + ",chunked=" + (chunkedRenderer != null ? largeDocumentThreshold : -1);
+    }
+
+    /**
+     * serialize the parsed document, postprocess the html and append it to the output
+     * @param context                the context of the rendering with config and element-ids
+     * @param document               the parsed document
+     * @param out                    the output to append the html to
+     * @throws IOException           possible Exception while appending
+     */
+    protected void serializeToHtml(JshRenderContext context, JshParsedDocument document, Appendable out)
+            throws IOException {
+        postProcessHtml(context, serializeToHtmlBuffer(context, document), out);
+    }
+
+    /**
+     * serialize the parsed document without postprocessing
+     * @param context                the context of the rendering with config and element-ids
+     * @param document               the parsed document
+     * @return                       the buffer of the serializer: it is reused by the next serialization
+     *                               of this thread
+     */
+    protected CharSequence serializeToHtmlBuffer(JshRenderContext context, JshParsedDocument document) {
+        JshPegdownProcessor pegdown = processorPool.getProcessor(context.getConfig(), PEGDOWN_OPTIONS);
+        return pegdown.toHtmlBuffer(document, new LinkRenderer(),
+                Collections.<String, VerbatimSerializer>emptyMap(), Collections.<ToHtmlSerializerPlugin>emptyList(),
+                context);
+    }
+
+    /**
+     * render the document parsed by parseUnlessSlow or the src by the fallback and append the html
+     * without postprocessing: the parts of a document are postprocessed together, so the heading-ids
+     * are allocated like in a complete rendering
+     * @param context                the context of the rendering with config and element-ids
+     * @param descText               the src of the markdown
+     * @param document               the parsed document or null to render the src by the fallback
+     * @param out                    the output to append the html to
+     * @return                       false if the rendering failed (timeout without fallback) and nothing was appended
+     * @throws IOException           possible Exception while appending
+     */
+    protected boolean renderParsedToRawHtml(JshRenderContext context, String descText, JshParsedDocument document,
+                                            Appendable out) throws IOException {
+        if (document != null) {
+            out.append(serializeToHtmlBuffer(context, document));
+            return true;
+        }
+        JshFallbackRenderer fallback = fallbackRenderer;
+        if (fallback == null) {
+            return false;
+        }
+        CharSequence newDescText = prepareMarkdown(context, descText);
+        JshRenderMetrics metrics = context.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        fallback.render(newDescText, out);
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.FALLBACK, System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    /**
+     * postprocess the html with the element-ids and outline of the context and report the duration to the metrics
+     * @param context                the context of the rendering with config and element-ids
+     * @param html                   the html to postprocess
+     * @param out                    the output to append the html to
+     * @throws IOException           possible Exception while appending
+     */
+    protected void postProcessHtml(JshRenderContext context, CharSequence html, Appendable out) throws IOException {
+        JshRenderMetrics metrics = context.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        postProcessHtml(html, context.getIdAllocator(), context.getOutline(), out);
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.POST_PROCESS, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * prepare the src for the parser and report the duration to the metrics
+     * @param context                the context to report the metrics to or null
+     * @param descText               the src of the markdown
+     * @return                       the prepared src
+     */
+    protected CharSequence prepareMarkdown(JshRenderContext context, String descText) {
+        JshRenderMetrics metrics = context != null ? context.getMetrics() : null;
+        long start = metrics != null ? System.nanoTime() : 0;
+        StringBuilder newDescText = this.prepareTextForMarkdownBuffer(descText, true);
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.PREPARE, System.nanoTime() - start);
+        }
         return newDescText;
     }
 
     /**
-     * process markdown to html
+     * scan the prepared src for pathological shapes and report the findings to the metrics
+     * @param context                the context to report the metrics to or null
+     * @param newDescText            the prepared src of the markdown
+     * @return                       the result of the scan or null if there is no prescanner
+     */
+    protected JshPrescanner.Result prescanMarkdown(JshRenderContext context, CharSequence newDescText) {
+        JshPrescanner scanner = prescanner;
+        if (scanner == null) {
+            return null;
+        }
+        JshRenderMetrics metrics = context != null ? context.getMetrics() : null;
+        long start = metrics != null ? System.nanoTime() : 0;
+        JshPrescanner.Result scan = scanner.scan(newDescText);
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.PRESCAN, System.nanoTime() - start);
+            metrics.setPrescanFindings(scan.getFindings());
+            metrics.setPrescanSafePath(scan.isSafePath());
+        }
+        return scan;
+    }
+
+    /**
+     * render the prepared text with the fallback-renderer and append it to the output
+     * @param fallback               the fallback-renderer
+     * @param context                the context of the rendering with config and element-ids
+     * @param newDescText            the prepared src of the markdown
+     * @param out                    the output to append the html to
+     * @return                       true
+     * @throws IOException           possible Exception while appending
+     */
+    protected boolean renderFallback(JshFallbackRenderer fallback, JshRenderContext context, CharSequence newDescText,
+                                     Appendable out) throws IOException {
+        JshRenderMetrics metrics = context.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        StringBuilder html = new StringBuilder(newDescText.length() + (newDescText.length() >> 3) + 64);
+        fallback.render(newDescText, html);
+        postProcessHtml(html, context.getIdAllocator(), context.getOutline(), out);
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.FALLBACK, System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    /**
+     * process markdown to html - the element-ids are allocated in the namespace derived from the content
      * @param config            the jsh-configuration for style-prefix and appBaseName...
      * @param src               the string to process
      * @return                  processed markdown
      */
     public String processMarkdownPegdown(JshConfig config, String src) {
-        PegDownProcessor pegdown = new JshPegdownProcessor(config,
-                Extensions.SUPPRESS_ALL_HTML + Extensions.TABLES,
-                PegDownProcessor.DEFAULT_MAX_PARSING_TIME,
-                PegDownPlugins.NONE);
-        String html = pegdown.markdownToHtml(src);
-
-        // replace code-blocks
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">mermaid(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"inlineMermaid",
-                "\" class=\"mermaid\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">yaiofreemind(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"inlineMindmap",
-                "\" class=\"yaiomindmap\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">yaiomindmap(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"inlineMindmap",
-                "\" class=\"yaiomindmap\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">yaioplantuml(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"yaioplantuml",
-                "\" class=\"yaioplantuml\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">ymffreemind(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"inlineMindmap",
-                "\" class=\"ymfmindmap\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">ymfmindmap(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"inlineMindmap",
-                "\" class=\"ymfmindmap\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">ymfplantuml(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<div id=\"ymfplantuml",
-                "\" class=\"ymfplantuml\">$1</div>").toString();
-        html = replaceDiagrammPattern(html,
-                "<code class=\"jsh-md-code\">(" + CONST_PATTERN_SEG_CODE + "*?)<\\/code>",
-                "<pre><code id=\"inlineCode",
-                "\" class=\"jsh-code txt\">$1</code></pre>").toString();
-        return html;
+        return processMarkdownPegdown(createRenderContext(config, createIdNamespace(src)), src);
+    }
+
+    /**
+     * process markdown to html
+     * @param context           the context of the rendering with config and element-ids
+     * @param src               the string to process
+     * @return                  processed markdown
+     */
+    public String processMarkdownPegdown(JshRenderContext context, String src) {
+        CharSequence html = processMarkdownPegdownToBuffer(context, src);
+        return html != null ? html.toString() : null;
+    }
+
+    /**
+     * process markdown to html and return the buffer of the serializer without copying it
+     * @param context           the context of the rendering with config and element-ids
+     * @param src               the string to process
+     * @return                  processed markdown or null if the parsing timed out
+     */
+    protected CharSequence processMarkdownPegdownToBuffer(JshRenderContext context, String src) {
+        JshPegdownProcessor pegdown = processorPool.getProcessor(context.getConfig(), PEGDOWN_OPTIONS);
+        pegdown.setFlyweightNodes(flyweightNodes);
+        return pegdown.markdownToHtmlBuffer(pegdown.toSource(src), new LinkRenderer(),
+                Collections.<String, VerbatimSerializer>emptyMap(), Collections.<ToHtmlSerializerPlugin>emptyList(),
+                context);
     }
 
     /**
      * prepare the text to format as markdown
      * prefix empty lines inline code-segs (```) so that they will interprewted as codeline by markdown-parser
+     * the escaped text is processed in one forward-pass: unescape &lt;br&gt; and jsh-comments, normalize
+     * linebreaks in code-segs and prefix empty lines with "."
      * @param descText               the string to prepare
      * @return                       prpeared text to format as markdown
      */
     public String prepareTextForMarkdown(final String descText) {
-        // prepare descText
-        String newDescText = "";
-        String newDescTextRest = DataUtils.htmlEscapeTextLazy(descText);
-        newDescTextRest = newDescTextRest.replaceAll("\\&lt;br\\&gt;", "<br>");
-        newDescTextRest = newDescTextRest.replaceAll("\\&lt;\\!---", "<!---");
-        newDescTextRest = newDescTextRest.replaceAll("---\\&gt;", "--->");
-
-        int codeStart = newDescTextRest.indexOf("```");
-        while (codeStart >= 0) {
-            // splice start and add to newDescText
-            newDescText += newDescTextRest.substring(0, codeStart + 3);
-            newDescTextRest = newDescTextRest.substring(codeStart + 3);
-
-            int codeEnd = newDescTextRest.indexOf("```");
-            if (codeEnd >= 0) {
-                // splice all before ending ```
-                String code = newDescTextRest.substring(0, codeEnd);
-                newDescTextRest = newDescTextRest.substring(codeEnd);
-
-                // replace empty lines in code
-                code = code.replaceAll("\r\n", "\n");
-                code = code.replaceAll("\n\r", "\n");
-                code = code.replaceAll("\n[ \t]*\n", "\n.\n");
-                code = code.replaceAll("\n\n", "\n.\n");
-
-                // add code to newDescText
-                newDescText += code;
-
-                // extract ending ``` and add it to newDescText
-                newDescText += newDescTextRest.substring(0, 3);
-                newDescTextRest = newDescTextRest.substring(3);
+        return prepareTextForMarkdown(descText, false);
+    }
+
+    /**
+     * prepare the text to format as markdown
+     * @param descText               the string to prepare
+     * @param replaceEllipsis        replace … by ...
+     * @return                       prpeared text to format as markdown
+     */
+    protected String prepareTextForMarkdown(final String descText, final boolean replaceEllipsis) {
+        return prepareTextForMarkdownBuffer(descText, replaceEllipsis).toString();
+    }
+
+    /**
+     * prepare the text to format as markdown into a buffer which is copied only once into the parser
+     * @param descText               the string to prepare
+     * @param replaceEllipsis        replace … by ...
+     * @return                       prpeared text to format as markdown
+     */
+    protected StringBuilder prepareTextForMarkdownBuffer(final String descText, final boolean replaceEllipsis) {
+        String src = DataUtils.htmlEscapeTextLazy(descText);
+        int len = src.length();
+        StringBuilder result = new StringBuilder(len + (len >> 4) + 16);
+
+        boolean inCode = false;
+        int pos = 0;
+        while (pos < len) {
+            char c = src.charAt(pos);
+            if (c == '`' && src.startsWith("```", pos)) {
+                // only open a code-seg if it will be closed
+                inCode = !inCode && src.indexOf("```", pos + 3) >= 0;
+                result.append("```");
+                pos += 3;
+            } else if (c == '&' && src.startsWith("&lt;br&gt;", pos)) {
+                result.append("<br>");
+                pos += 10;
+            } else if (c == '&' && src.startsWith("&lt;!---", pos)) {
+                result.append("<!---");
+                pos += 8;
+            } else if (c == '&' && src.startsWith("&gt;", pos) && endsWith(result, "---")) {
+                result.append('>');
+                pos += 4;
+            } else if (c == '…' && replaceEllipsis) {
+                result.append("...");
+                pos++;
+            } else if (inCode && isLinebreak(src, pos)) {
+                // normalize \r\n and \n\r to \n
+                pos += (c == '\r') ? 2 : 1;
+                if (pos < len && src.charAt(pos) == '\r' && !isLinebreak(src, pos)) {
+                    pos++;
+                }
+                result.append('\n');
+
+                // replace empty lines by "."
+                int next = pos;
+                while (next < len && (src.charAt(next) == ' ' || src.charAt(next) == '\t')) {
+                    next++;
+                }
+                if (isLinebreak(src, next)) {
+                    result.append('.');
+                    pos = next;
+                }
+            } else {
+                result.append(c);
+                pos++;
             }
-            codeStart = newDescTextRest.indexOf("```");
         }
-        // add rest to newDescText
-        newDescText += newDescTextRest;
 
-        return newDescText;
+        return result;
     }
 
     /**
-     * search for the pattern and replace it with the replacementhead + htmlId + replacementTail
+     * check if there is a linebreak (\n or \r\n) at the position
      * @param text                   the haystack
-     * @param patternString          the needle to replace
-     * @param replacementHead        the head before the new htmlelement-id
-     * @param replacementTail        the tail after the new htmlelement-id
-     * @return                       formatted diagramm-markdown
-     */
-    protected StringBuffer replaceDiagrammPattern(final String text,
-                                                  final String patternString,
-                                                  final String replacementHead, final String replacementTail) {
-        Pattern pattern = Pattern.compile(patternString);
-        Matcher matcher = pattern.matcher(text);
-        StringBuffer result = new StringBuffer();
-        while (matcher.find()) {
-            matcher.appendReplacement(result, replacementHead + new Integer(htmlElementId++) + replacementTail);
-        }
-        matcher.appendTail(result);
+     * @param pos                    the position to check
+     * @return                       true if there is a linebreak
+     */
+    protected boolean isLinebreak(final String text, final int pos) {
+        if (pos >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(pos);
+        return c == '\n' || (c == '\r' && pos + 1 < text.length() && text.charAt(pos + 1) == '\n');
+    }
 
-        return result;
+    /**
+     * check if the builder ends with the suffix
+     * @param text                   the haystack
+     * @param suffix                 the needle
+     * @return                       true if the text ends with the suffix
+     */
+    protected boolean endsWith(final StringBuilder text, final String suffix) {
+        int offset = text.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (text.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * postprocess the html rendered by pegdown in one forward-pass:
+     * replace … and &amp;mdash;, add ids to headings, reescape &amp;amp;gt; and remove the markdown-hack "\n.\n"
+     * @param html                   the html to postprocess
+     * @param idAllocator            allocator for the heading-ids
+     * @return                       postprocessed html
+     */
+    protected String postProcessHtml(final CharSequence html, final JshElementIdAllocator idAllocator) {
+        StringBuilder result = new StringBuilder(html.length() + 64);
+        try {
+            postProcessHtml(html, idAllocator, result);
+        } catch (IOException ex) {
+            // StringBuilder does not throw IOExceptions
+            throw new IllegalStateException(ex);
+        }
+        return result.toString();
+    }
+
+    /**
+     * postprocess the html rendered by pegdown in one forward-pass and append it to the output:
+     * the unchanged parts are appended as ranges without copying them
+     * @param html                   the html to postprocess
+     * @param idAllocator            allocator for the heading-ids
+     * @param out                    the output to append the html to
+     * @throws IOException           possible Exception while appending
+     */
+    protected void postProcessHtml(final CharSequence html, final JshElementIdAllocator idAllocator,
+                                   final Appendable out) throws IOException {
+        postProcessHtml(html, idAllocator, null, out);
+    }
+
+    /**
+     * postprocess the html rendered by pegdown in one forward-pass and append it to the output
+     * @param html                   the html to postprocess
+     * @param idAllocator            allocator for the heading-ids
+     * @param outline                the outline to add the headings to or null: if set, also the headings
+     *                               with attributes get ids
+     * @param out                    the output to append the html to
+     * @throws IOException           possible Exception while appending
+     */
+    protected void postProcessHtml(final CharSequence html, final JshElementIdAllocator idAllocator,
+                                   final JshRenderOutline outline, final Appendable out) throws IOException {
+        int len = html.length();
+        int pos = 0;
+        int unchangedStart = 0;
+        while (pos < len) {
+            char c = html.charAt(pos);
+            String replacement = null;
+            int replacedEnd = pos;
+            if (c == '…') {
+                replacement = "...";
+                replacedEnd = pos + 1;
+            } else if (c == '&' && regionMatches(html, pos, "&mdash;")) {
+                replacement = "---";
+                replacedEnd = pos + 7;
+            } else if (c == '&' && regionMatches(html, pos, "&amp;gt;")) {
+                replacement = "&gt;";
+                replacedEnd = pos + 8;
+            } else if (c == '\n' && regionMatches(html, pos, "\n.\n")) {
+                replacement = "\n";
+                replacedEnd = pos + 3;
+            } else if (c == '<' && pos + 1 < len && html.charAt(pos + 1) == 'h') {
+                // add id to heading: <h1> -> <h1 id="heading_...">, if the outline is collected also
+                // <h1 class=...> -> <h1 id="heading_..." class=...> (headings with id have got it by the serializer)
+                int end = pos + 2;
+                while (end < len && html.charAt(end) >= '0' && html.charAt(end) <= '9') {
+                    end++;
+                }
+                if (end > pos + 2 && end < len
+                        && (html.charAt(end) == '>' || (outline != null && html.charAt(end) == ' '))
+                        && !regionMatches(html, end, " id=\"")) {
+                    String headingId = "heading_" + idAllocator.nextId();
+                    replacement = html.subSequence(pos, end) + " id=\"" + headingId + "\"";
+                    replacedEnd = end;
+                    if (outline != null) {
+                        addHeading(outline, html, pos + 2, end, headingId);
+                    }
+                }
+            }
+
+            if (replacement != null) {
+                out.append(html, unchangedStart, pos).append(replacement);
+                pos = replacedEnd;
+                unchangedStart = pos;
+            } else {
+                pos++;
+            }
+        }
+        out.append(html, unchangedStart, len);
+    }
+
+    /**
+     * add the heading to the outline: the text is the content up to the end-tag without tags
+     * @param outline                the outline to add the heading to
+     * @param html                   the html to postprocess
+     * @param levelStart             start of the level behind "&lt;h"
+     * @param levelEnd               end of the level in front of the attributes or "&gt;"
+     * @param headingId              the element-id of the heading
+     */
+    protected void addHeading(final JshRenderOutline outline, final CharSequence html, final int levelStart,
+                              final int levelEnd, final String headingId) {
+        String endTag = "</h" + html.subSequence(levelStart, levelEnd) + ">";
+        int textStart = levelEnd;
+        while (textStart < html.length() && html.charAt(textStart) != '>') {
+            textStart++;
+        }
+        int textEnd = textStart;
+        while (textEnd < html.length() && !regionMatches(html, textEnd, endTag)) {
+            textEnd++;
+        }
+        outline.addHeading(Integer.parseInt(html.subSequence(levelStart, levelEnd).toString()), headingId,
+                JshRenderOutline.extractText(html, Math.min(textStart + 1, textEnd), textEnd));
+    }
+
+    /**
+     * check if the text contains the needle at the position
+     * @param text                   the haystack
+     * @param pos                    the position to check
+     * @param needle                 the needle
+     * @return                       true if the needle is found at the position
+     */
+    protected boolean regionMatches(final CharSequence text, final int pos, final String needle) {
+        if (pos + needle.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < needle.length(); i++) {
+            if (text.charAt(pos + i) != needle.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * output which counts the appended chars for the metrics
+     */
+    protected static class CountingAppendable implements Appendable {
+        protected final Appendable out;
+        protected int count;
+
+        protected CountingAppendable(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            // like StringBuilder: null is appended as "null"
+            csq = csq != null ? csq : "null";
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            csq = csq != null ? csq : "null";
+            count += end - start;
+            out.append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            count++;
+            out.append(c);
+            return this;
+        }
     }
 }
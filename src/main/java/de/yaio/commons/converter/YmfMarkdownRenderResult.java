@@ -0,0 +1,38 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.pegdown.JshRenderOutline;
+
+/**
+ * the rendered html of a document with its outline (diagrams, headings, TOC-placeholders, togglers
+ * and containers), so the client can initialize them without parsing the html again
+ */
+public class YmfMarkdownRenderResult {
+    protected final String html;
+    protected final JshRenderOutline outline;
+
+    public YmfMarkdownRenderResult(String html, JshRenderOutline outline) {
+        this.html = html;
+        this.outline = outline;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    public JshRenderOutline getOutline() {
+        return outline;
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.pegdown.JshConfig;
+import org.pegdown.JshFallbackRenderer;
+import org.pegdown.JshRenderContext;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * renders documents asynchronously on dedicated bounded worker-pools, so the request-threads are not
+ * blocked by heavy documents
+ *
+ * small and large documents are rendered in separate lanes with own workers and queues, so short
+ * descriptions are not queued behind multi-MB documents. if the queue of a lane is full the document is
+ * rejected (the future fails with a RejectedExecutionException) or degraded (rendered at once by the
+ * linear fallback-renderer of the provider on the calling thread). after shutdown submit throws a
+ * RejectedExecutionException like an ExecutorService, it is not counted as overload.
+ */
+public class YmfMarkdownRenderService {
+    /** default size in chars up to which documents are rendered in the small lane */
+    public static final int DEFAULT_SMALL_DOCUMENT_THRESHOLD = 16 * 1024;
+    /** default count of queued documents per lane */
+    public static final int DEFAULT_QUEUE_DEPTH = 100;
+
+    /**
+     * the handling of documents if the queue of their lane is full
+     */
+    public enum OverloadPolicy {
+        /** fail the future with a RejectedExecutionException */
+        REJECT,
+        /** render the document with the fallback-renderer on the calling thread (reject if there is none) */
+        DEGRADE
+    }
+
+    protected final YmfMarkdownProvider provider;
+    protected final ThreadPoolExecutor smallLane;
+    protected final ThreadPoolExecutor largeLane;
+    protected int smallDocumentThreshold = DEFAULT_SMALL_DOCUMENT_THRESHOLD;
+    protected OverloadPolicy overloadPolicy = OverloadPolicy.REJECT;
+    protected final AtomicLong rejectedCount = new AtomicLong();
+    protected final AtomicLong degradedCount = new AtomicLong();
+
+    /**
+     * create a service with one worker per core for small documents, one worker for large documents
+     * and the default queue-depth
+     * @param provider               the provider to render the documents
+     */
+    public YmfMarkdownRenderService(YmfMarkdownProvider provider) {
+        this(provider, Runtime.getRuntime().availableProcessors(), 1, DEFAULT_QUEUE_DEPTH);
+    }
+
+    /**
+     * create a service
+     * @param provider               the provider to render the documents
+     * @param smallWorkers           count of worker-threads for small documents
+     * @param largeWorkers           count of worker-threads for large documents
+     * @param queueDepth             max count of queued documents per lane
+     */
+    public YmfMarkdownRenderService(YmfMarkdownProvider provider, int smallWorkers, int largeWorkers,
+                                    int queueDepth) {
+        this.provider = provider;
+        this.smallLane = createLane("ymf-render-small-", smallWorkers, queueDepth);
+        this.largeLane = createLane("ymf-render-large-", largeWorkers, queueDepth);
+    }
+
+    /**
+     * create the bounded worker-pool of a lane: it throws a RejectedExecutionException if the queue is full
+     * @param namePrefix             prefix of the names of the worker-threads
+     * @param workers                count of worker-threads
+     * @param queueDepth             max count of queued documents
+     * @return                       the worker-pool
+     */
+    protected ThreadPoolExecutor createLane(final String namePrefix, int workers, int queueDepth) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            protected final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueDepth), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * render the document asynchronously in the lane for its size
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @return                       the future of the html (null if the rendering failed) - it fails with a
+     *                               RejectedExecutionException if the service is overloaded
+     * @throws RejectedExecutionException if the service is shutdown (no overload: not rejected or degraded)
+     */
+    public Future<String> submit(final JshConfig config, final String descText, final String idNamespace) {
+        ThreadPoolExecutor lane = descText.length() <= smallDocumentThreshold ? smallLane : largeLane;
+        try {
+            return lane.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return provider.convertMarkdownToHtml(config, descText, idNamespace);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            if (lane.isShutdown()) {
+                throw ex;
+            }
+            return handleOverload(config, descText, idNamespace, ex);
+        }
+    }
+
+    /**
+     * handle a document which is not accepted by its lane: reject or degrade it by the overloadPolicy
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @param rejection              the rejection of the lane
+     * @return                       the completed future
+     */
+    protected Future<String> handleOverload(final JshConfig config, final String descText, final String idNamespace,
+                                            final RejectedExecutionException rejection) {
+        final JshFallbackRenderer fallback = provider.getFallbackRenderer();
+        FutureTask<String> task;
+        if (overloadPolicy == OverloadPolicy.DEGRADE && fallback != null) {
+            degradedCount.incrementAndGet();
+            task = new FutureTask<>(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return renderDegraded(fallback, config, descText, idNamespace);
+                }
+            });
+        } else {
+            rejectedCount.incrementAndGet();
+            task = new FutureTask<>(new Callable<String>() {
+                @Override
+                public String call() {
+                    throw rejection;
+                }
+            });
+        }
+        task.run();
+        return task;
+    }
+
+    /**
+     * render the document with the linear fallback-renderer without parsing it
+     * @param fallback               the fallback-renderer
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param descText               the src of the markdown
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     * @return                       the html
+     * @throws IOException           possible Exception while rendering
+     */
+    protected String renderDegraded(JshFallbackRenderer fallback, JshConfig config, String descText,
+                                    String idNamespace) throws IOException {
+        JshRenderContext context = provider.createRenderContext(config, idNamespace);
+        StringBuilder out = new StringBuilder(descText.length() + (descText.length() >> 3) + 64);
+        provider.renderFallback(fallback, context, provider.prepareMarkdown(context, descText), out);
+        return out.toString();
+    }
+
+    /**
+     * stop accepting documents: the queued documents are still rendered
+     */
+    public void shutdown() {
+        smallLane.shutdown();
+        largeLane.shutdown();
+    }
+
+    /**
+     * wait until the queued documents are rendered after shutdown
+     * @param timeout                max time to wait
+     * @param unit                   unit of the timeout
+     * @return                       true if both lanes are terminated
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return smallLane.awaitTermination(timeout, unit)
+                && largeLane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public int getSmallDocumentThreshold() {
+        return smallDocumentThreshold;
+    }
+
+    /**
+     * set the size up to which documents are rendered in the small lane
+     * @param smallDocumentThreshold the size in chars
+     */
+    public void setSmallDocumentThreshold(int smallDocumentThreshold) {
+        this.smallDocumentThreshold = smallDocumentThreshold;
+    }
+
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+    /**
+     * get the count of documents which were rejected because of overload
+     * @return                       the count since the creation of the service
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * get the count of documents which were rendered by the fallback-renderer because of overload
+     * @return                       the count since the creation of the service
+     */
+    public long getDegradedCount() {
+        return degradedCount.get();
+    }
+
+    /**
+     * get the count of queued documents of the small lane
+     * @return                       the count of waiting documents
+     */
+    public int getSmallQueueSize() {
+        return smallLane.getQueue().size();
+    }
+
+    /**
+     * get the count of queued documents of the large lane
+     * @return                       the count of waiting documents
+     */
+    public int getLargeQueueSize() {
+        return largeLane.getQueue().size();
+    }
+}
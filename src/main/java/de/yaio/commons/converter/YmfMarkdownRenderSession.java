@@ -0,0 +1,166 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.pegdown.JshConfig;
+import org.pegdown.JshDigest;
+import org.pegdown.JshRenderContext;
+import org.pegdown.JshTocMode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * incremental rendering of a document which is edited (live-preview...)
+ *
+ * the document is split into top-level blocks by the YmfMarkdownBlockSplitter and the html of the blocks
+ * is cached by their content: after an edit only the changed blocks are rendered again.
+ * the STYLE-directives of the preceding blocks are rendered in front of every block, so a changed
+ * STYLE-directive renders all following blocks again.
+ * the element-ids of a block are allocated in a namespace derived from its content, so the ids are unique
+ * in the document but differ from a complete rendering with convertMarkdownToHtml.
+ * with JshTocMode.SERVER the TOCs list the headings of the complete document, so the document is rendered
+ * completely on every call.
+ */
+public class YmfMarkdownRenderSession {
+    /** count of hex-chars of the block-digest used in the id-namespace */
+    protected static final int NAMESPACE_DIGEST_LENGTH = 12;
+
+    protected final YmfMarkdownProvider provider;
+    protected final JshConfig config;
+    protected final String idNamespace;
+    protected YmfMarkdownBlockSplitter splitter = new YmfMarkdownBlockSplitter();
+
+    /** the html of the blocks of the last rendering by block-key */
+    protected Map<String, String> blockHtmls = new HashMap<>();
+    protected int blockCount;
+    protected int renderedBlockCount;
+
+    /**
+     * create a session for one document
+     * @param provider               the provider to render the blocks
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param idNamespace            namespace for the generated element-ids (unique per document on a page)
+     */
+    public YmfMarkdownRenderSession(YmfMarkdownProvider provider, JshConfig config, String idNamespace) {
+        this.provider = provider;
+        this.config = config;
+        this.idNamespace = idNamespace;
+    }
+
+    /**
+     * render the current version of the document: only blocks which are not rendered in the last call
+     * are parsed again
+     * @param descText               the src of the markdown
+     * @return                       the html or null if the rendering of a block failed (timeout without fallback)
+     * @throws IOException           possible Exception
+     */
+    public synchronized String render(String descText) throws IOException {
+        if (config != null && config.getTocMode() == JshTocMode.SERVER) {
+            return renderDocument(descText);
+        }
+
+        List<String> blocks = splitter.splitBlocks(descText);
+        Map<String, String> definitions = splitter.extractDefinitionMap(descText);
+
+        Map<String, String> currentBlockHtmls = new HashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        StringBuilder out = new StringBuilder(descText.length() * 2 + 64);
+        StringBuilder styleDirectives = new StringBuilder();
+        int rendered = 0;
+        for (String block : blocks) {
+            // the key: digest of the content with the definitions it references, the occurrence of the same
+            // content in this document and the end of the preceding output (the linebreak in front of the
+            // block depends on it)
+            String blockDefinitions = splitter.selectDefinitions(block, definitions);
+            String digest = JshDigest.digest(styleDirectives.toString(), block, blockDefinitions);
+            Integer occurrence = occurrences.get(digest);
+            occurrence = occurrence == null ? 0 : occurrence + 1;
+            occurrences.put(digest, occurrence);
+            String precedingOutput = splitter.getPrecedingOutput(out);
+            String key = digest + "_" + occurrence + "_" + precedingOutput;
+
+            String html = blockHtmls.get(key);
+            if (html == null) {
+                StringBuilder blockOut = new StringBuilder(block.length() * 2 + 64);
+                String blockSrc = splitter.buildBlockSrc(styleDirectives.toString(), block, blockDefinitions);
+                JshRenderContext context = provider.createRenderContext(config,
+                        idNamespace + digest.substring(0, NAMESPACE_DIGEST_LENGTH) + "_" + occurrence + "_");
+                context.setPrecedingOutput(precedingOutput);
+                if (!provider.renderMarkdownToHtml(context, blockSrc, blockOut)) {
+                    return null;
+                }
+                html = blockOut.toString();
+                rendered++;
+            }
+            currentBlockHtmls.put(key, html);
+            out.append(html);
+            styleDirectives.append(splitter.extractStyleDirectives(block));
+        }
+
+        blockHtmls = currentBlockHtmls;
+        blockCount = blocks.size();
+        renderedBlockCount = rendered;
+        return out.toString();
+    }
+
+    /**
+     * render the complete document as one block
+     * @param descText               the src of the markdown
+     * @return                       the html or null if the rendering failed (timeout without fallback)
+     * @throws IOException           possible Exception
+     */
+    protected String renderDocument(String descText) throws IOException {
+        StringBuilder out = new StringBuilder(descText.length() * 2 + 64);
+        boolean rendered = provider.renderMarkdownToHtml(provider.createRenderContext(config, idNamespace),
+                descText, out);
+        blockHtmls = new HashMap<>();
+        blockCount = 1;
+        renderedBlockCount = 1;
+        return rendered ? out.toString() : null;
+    }
+
+    /**
+     * drop the cached blocks
+     */
+    public synchronized void clear() {
+        blockHtmls = new HashMap<>();
+    }
+
+    /**
+     * get the count of blocks of the last rendering
+     * @return                       the count of blocks
+     */
+    public synchronized int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * get the count of blocks which had to be rendered in the last rendering (not cached)
+     * @return                       the count of rendered blocks
+     */
+    public synchronized int getRenderedBlockCount() {
+        return renderedBlockCount;
+    }
+
+    public YmfMarkdownBlockSplitter getSplitter() {
+        return splitter;
+    }
+
+    public void setSplitter(YmfMarkdownBlockSplitter splitter) {
+        this.splitter = splitter;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * the digests of documents which ran into the parsing-timeout: they are rendered with the fallback
+ * without parsing them again.
+ * the registry is bounded: the least recently used digests are dropped.
+ */
+public class YmfSlowDocumentRegistry {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    protected final int maxEntries;
+    protected final LinkedHashMap<String, Boolean> digests;
+
+    public YmfSlowDocumentRegistry() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * create a registry
+     * @param maxEntries             max count of digests
+     */
+    public YmfSlowDocumentRegistry(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.digests = new LinkedHashMap<String, Boolean>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > YmfSlowDocumentRegistry.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * check if the document is known as slow
+     * @param digest                 the digest of the document
+     * @return                       true if the document ran into the parsing-timeout before
+     */
+    public synchronized boolean contains(String digest) {
+        return digests.get(digest) != null;
+    }
+
+    /**
+     * register the document as slow
+     * @param digest                 the digest of the document
+     */
+    public synchronized void add(String digest) {
+        digests.put(digest, Boolean.TRUE);
+    }
+
+    /**
+     * remove the document (to parse it again after a change of the parsing-timeout...)
+     * @param digest                 the digest of the document
+     */
+    public synchronized void remove(String digest) {
+        digests.remove(digest);
+    }
+
+    public synchronized void clear() {
+        digests.clear();
+    }
+
+    public synchronized boolean isEmpty() {
+        return digests.isEmpty();
+    }
+
+    public synchronized int getSize() {
+        return digests.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "YmfSlowDocumentRegistry{size=" + digests.size() + "/" + maxEntries + "}";
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * aho-corasick-automaton to find the whole-word matches of all abbreviations of a document in one pass
+ *
+ * the matches are the same as with a separate indexOf-scan per abbreviation: every abbreviation
+ * matches non-overlapping from left to right and at the same start the last abbreviation
+ * (in iteration-order of the map) wins.
+ * the matcher holds scratch-buffers, so it must only be used by one serializer.
+ */
+public class JshAbbreviationMatcher {
+    protected final List<Map.Entry<String, String>> entries = new ArrayList<>();
+    protected final int[] lengths;
+
+    // the automaton: children as sorted char-arrays per state
+    protected final char[][] childChars;
+    protected final int[][] childStates;
+    protected final int[] failStates;
+    protected final int[] patterns;
+    protected final int[] dictStates;
+
+    // scratch: next allowed start per abbreviation for the current text
+    protected final int[] nextAllowed;
+    protected final int[] nextAllowedGeneration;
+    protected int generation;
+
+    /**
+     * build the automaton for the abbreviations
+     * @param abbreviations      the abbreviations with their expansions
+     */
+    public JshAbbreviationMatcher(Map<String, String> abbreviations) {
+        for (Map.Entry<String, String> entry : abbreviations.entrySet()) {
+            if (entry.getKey().length() > 0) {
+                entries.add(entry);
+            }
+        }
+        lengths = new int[entries.size()];
+        nextAllowed = new int[entries.size()];
+        nextAllowedGeneration = new int[entries.size()];
+
+        // build the trie
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> statePatterns = new ArrayList<>();
+        children.add(new TreeMap<Character, Integer>());
+        statePatterns.add(-1);
+        for (int i = 0; i < entries.size(); i++) {
+            String abbr = entries.get(i).getKey();
+            lengths[i] = abbr.length();
+            int state = 0;
+            for (int j = 0; j < abbr.length(); j++) {
+                Integer next = children.get(state).get(abbr.charAt(j));
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<Character, Integer>());
+                    statePatterns.add(-1);
+                    children.get(state).put(abbr.charAt(j), next);
+                }
+                state = next;
+            }
+            statePatterns.set(state, i);
+        }
+
+        int count = children.size();
+        childChars = new char[count][];
+        childStates = new int[count][];
+        patterns = new int[count];
+        for (int state = 0; state < count; state++) {
+            TreeMap<Character, Integer> stateChildren = children.get(state);
+            childChars[state] = new char[stateChildren.size()];
+            childStates[state] = new int[stateChildren.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> child : stateChildren.entrySet()) {
+                childChars[state][j] = child.getKey();
+                childStates[state][j] = child.getValue();
+                j++;
+            }
+            patterns[state] = statePatterns.get(state);
+        }
+
+        // fail- and dictionary-links breadth-first
+        failStates = new int[count];
+        dictStates = new int[count];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int j = 0; j < childChars[state].length; j++) {
+                char c = childChars[state][j];
+                int child = childStates[state][j];
+                int fail = 0;
+                if (state != 0) {
+                    fail = failStates[state];
+                    while (fail != 0 && findChild(fail, c) < 0) {
+                        fail = failStates[fail];
+                    }
+                    fail = Math.max(findChild(fail, c), 0);
+                }
+                failStates[child] = fail;
+                dictStates[child] = patterns[fail] >= 0 ? fail : dictStates[fail];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * get the count of abbreviations
+     * @return                   the count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * get the abbreviation with the index
+     * @param index              the index of the abbreviation
+     * @return                   abbreviation with expansion
+     */
+    public Map.Entry<String, String> getEntry(int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * find all whole-word matches in the text
+     * @param text               the text
+     * @return                   null if there are no matches, else array with index+1 of the abbreviation
+     *                           for each start-position of a match or 0
+     */
+    public int[] findMatches(String text) {
+        int[] res = null;
+        generation++;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = findChild(state, c);
+            while (next < 0 && state != 0) {
+                state = failStates[state];
+                next = findChild(state, c);
+            }
+            state = Math.max(next, 0);
+
+            for (int match = patterns[state] >= 0 ? state : dictStates[state]; match != 0; match = dictStates[match]) {
+                int pattern = patterns[match];
+                int sx = i + 1 - lengths[pattern];
+                int ix = i + 1;
+
+                // matches of the same abbreviation don't overlap
+                if (nextAllowedGeneration[pattern] == generation && sx < nextAllowed[pattern]) {
+                    continue;
+                }
+                nextAllowed[pattern] = ix;
+                nextAllowedGeneration[pattern] = generation;
+
+                // only allow whole word matches
+                if (sx > 0 && Character.isLetterOrDigit(text.charAt(sx - 1))) {
+                    continue;
+                }
+                if (ix < text.length() && Character.isLetterOrDigit(text.charAt(ix))) {
+                    continue;
+                }
+
+                if (res == null) {
+                    res = new int[text.length()];
+                }
+                res[sx] = Math.max(res[sx], pattern + 1);
+            }
+        }
+        return res;
+    }
+
+    protected int findChild(int state, char c) {
+        char[] chars = childChars[state];
+        int low = 0;
+        int high = chars.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (chars[mid] < c) {
+                low = mid + 1;
+            } else if (chars[mid] > c) {
+                high = mid - 1;
+            } else {
+                return childStates[state][mid];
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.pegdown.ast.CodeNode;
+
+/**
+ * serializer for code-blocks with a language-prefix (mermaid, mindmap, plantuml...)
+ * analogous to the VerbatimSerializer of pegdown
+ */
+public interface JshCodeSerializer {
+    /** key of the serializer for code-blocks without matching language-prefix */
+    String DEFAULT = "DEFAULT";
+
+    /**
+     * serialize the code-block
+     * @param node               the code-node
+     * @param code               the code without language-prefix
+     * @param elementId          the unique html-element-id for this block
+     * @param printer            the printer to print to
+     */
+    void serialize(CodeNode node, String code, String elementId, Printer printer);
+}
@@ -21,6 +21,8 @@ public class JshConfig {
 
     private String appBaseVarName = "jshAppBase";
 
+    private JshTocMode tocMode = JshTocMode.CLIENT;
+
     public String getStylePrefix() {
         return stylePrefix;
     }
@@ -37,4 +39,38 @@ public class JshConfig {
         this.appBaseVarName = appBaseVarName;
     }
 
+    public JshTocMode getTocMode() {
+        return tocMode;
+    }
+
+    /**
+     * set the rendering of the TOC-directive
+     * @param tocMode           CLIENT for a script which builds the TOC in the browser,
+     *                          SERVER for static lists of the headings
+     */
+    public void setTocMode(JshTocMode tocMode) {
+        this.tocMode = tocMode;
+    }
+
+    /**
+     * the fingerprint of all settings which affect the rendered html - to use in cache-keys
+     * the fields are prefixed with their length, so separators in the values can't produce collisions
+     * @return                  the settings as string
+     */
+    public String getFingerprint() {
+        StringBuilder res = new StringBuilder();
+        appendFingerprintField(res, stylePrefix);
+        appendFingerprintField(res, appBaseVarName);
+        appendFingerprintField(res, tocMode != null ? tocMode.name() : null);
+        return res.toString();
+    }
+
+    protected static void appendFingerprintField(StringBuilder res, String value) {
+        if (value == null) {
+            res.append("-|");
+            return;
+        }
+        res.append(value.length()).append(':').append(value).append('|');
+    }
+
 }
@@ -0,0 +1,31 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.pegdown.ast.CodeNode;
+
+/**
+ * serializer for code-blocks without diagramm-type: renders a jsh-code-block
+ */
+public class JshDefaultCodeSerializer implements JshCodeSerializer {
+    public static final JshDefaultCodeSerializer INSTANCE = new JshDefaultCodeSerializer();
+
+    @Override
+    public void serialize(CodeNode node, String code, String elementId, Printer printer) {
+        printer.print("<pre><code id=\"inlineCode").print(elementId)
+                .print("\" class=\"jsh-code txt\">");
+        printer.printEncoded(code);
+        printer.print("</code></pre>");
+    }
+}
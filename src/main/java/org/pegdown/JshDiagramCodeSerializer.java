@@ -0,0 +1,45 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.pegdown.ast.CodeNode;
+
+/**
+ * serializer for diagramm-code-blocks: renders a div-container which is rendered by the client
+ */
+public class JshDiagramCodeSerializer implements JshCodeSerializer {
+    protected final String idPrefix;
+    protected final String styleClass;
+
+    public JshDiagramCodeSerializer(String idPrefix, String styleClass) {
+        this.idPrefix = idPrefix;
+        this.styleClass = styleClass;
+    }
+
+    public String getIdPrefix() {
+        return idPrefix;
+    }
+
+    public String getStyleClass() {
+        return styleClass;
+    }
+
+    @Override
+    public void serialize(CodeNode node, String code, String elementId, Printer printer) {
+        printer.print("<div id=\"").print(idPrefix).print(elementId)
+                .print("\" class=\"").print(styleClass).print("\">");
+        printer.printEncoded(code);
+        printer.print("</div>");
+    }
+}
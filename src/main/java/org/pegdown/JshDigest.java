@@ -0,0 +1,57 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * content-hashes for markdown-sources to use as keys for caches and registries
+ */
+public class JshDigest {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JshDigest() {
+    }
+
+    /**
+     * generate the sha-256-hash of the parts
+     * @param parts             the parts to hash (null is hashed like an empty string)
+     * @return                  the hash as hex-string
+     */
+    public static String digest(String... parts) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (String part : parts) {
+            if (part != null) {
+                md.update(part.getBytes(StandardCharsets.UTF_8));
+            }
+            // separator so that ("ab", "c") and ("a", "bc") differ
+            md.update((byte) 0);
+        }
+
+        byte[] hash = md.digest();
+        char[] res = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            res[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            res[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(res);
+    }
+}
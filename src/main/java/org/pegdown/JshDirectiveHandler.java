@@ -0,0 +1,77 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * handler for a jsh-directive like BOX, CONTAINER, STYLE, TOGGLER, TOC in &lt;!---KEYWORD param---&gt;
+ * registered with its keyword in the JshRenderer
+ */
+public abstract class JshDirectiveHandler {
+    /** allowed chars for box-params: # to _, a-z and blank */
+    public static final String BOX_PARAM_CHARS = range('#', '_') + range('a', 'z') + " ";
+    /** allowed chars for toggler- and toc-params */
+    public static final String TOGGLER_PARAM_CHARS = "-#_" + range('a', 'z') + range('A', 'Z') + ",;" + range('0', '9') + ".";
+    /** allowed chars for toggler-append-params */
+    public static final String TOGGLER_APPEND_PARAM_CHARS = TOGGLER_PARAM_CHARS + ": ";
+
+    protected final boolean[] allowedParamChars = new boolean[128];
+
+    /**
+     * create the handler
+     * @param allowedParamChars      all chars allowed in the param (ascii only)
+     */
+    public JshDirectiveHandler(String allowedParamChars) {
+        for (int i = 0; i < allowedParamChars.length(); i++) {
+            this.allowedParamChars[allowedParamChars.charAt(i)] = true;
+        }
+    }
+
+    /**
+     * check that the param contains only allowed chars
+     * @param param              the param (without leading/trailing blanks)
+     * @return                   true if the param is valid for this directive
+     */
+    public boolean isValidParam(String param) {
+        for (int i = 0; i < param.length(); i++) {
+            char c = param.charAt(i);
+            if (c >= allowedParamChars.length || !allowedParamChars[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * render the directive
+     * @param renderer           the renderer of the current document
+     * @param keyword            the keyword of the directive
+     * @param param              the param (without leading/trailing blanks)
+     * @return                   the html
+     */
+    public abstract String render(JshRenderer renderer, String keyword, String param);
+
+    /**
+     * get all chars between from and to
+     * @param from               the first char
+     * @param to                 the last char
+     * @return                   the chars
+     */
+    protected static String range(char from, char to) {
+        StringBuilder res = new StringBuilder();
+        for (char c = from; c <= to; c++) {
+            res.append(c);
+        }
+        return res.toString();
+    }
+}
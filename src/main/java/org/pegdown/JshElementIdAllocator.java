@@ -0,0 +1,47 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * allocator for html-element-ids of one rendering
+ *
+ * every rendering gets its own allocator, so identical input produces identical output and
+ * renderings can run in parallel. the optional namespace makes the ids unique if several
+ * documents are rendered into the same page.
+ * an allocator is not thread-safe.
+ */
+public class JshElementIdAllocator {
+    protected final String namespace;
+    protected int nextId = 1;
+
+    public JshElementIdAllocator() {
+        this("");
+    }
+
+    public JshElementIdAllocator(String namespace) {
+        this.namespace = (namespace != null ? namespace : "");
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * allocate the next id
+     * @return                  the next id: namespace + counter
+     */
+    public String nextId() {
+        return namespace + nextId++;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.io.IOException;
+
+/**
+ * cheap rendering in linear time for documents the parser can't handle in time (parsing-timeout)
+ *
+ * the text is escaped and split into paragraphs at blank lines, code-segs (```) are rendered as
+ * pre-blocks, &lt;br&gt; is kept and the jsh-directives are dropped (they end the paragraph) - unclosed
+ * jsh-directives are text.
+ * existing entities (the provider escapes the src before) are not escaped again.
+ */
+public class JshFallbackRenderer {
+    protected static final String CODE_SEG = "```";
+    protected static final String JSH_START = "<!---";
+    protected static final String JSH_END = "--->";
+    protected static final String BR = "<br>";
+    /** max length of an entity like &amp;#x1F600; */
+    protected static final int MAX_ENTITY_LENGTH = 10;
+
+    /**
+     * render the markdown-src and append the html to the output
+     * @param src                the markdown-src
+     * @param out                the output to append the html to
+     * @throws IOException       possible Exception while appending
+     */
+    public void render(CharSequence src, Appendable out) throws IOException {
+        int len = src.length();
+        int lastCodeSeg = lastIndexOf(src, CODE_SEG);
+        int lastJshEnd = lastIndexOf(src, JSH_END);
+        boolean paraOpen = false;
+        int pos = 0;
+        while (pos < len) {
+            char c = src.charAt(pos);
+            if (c == '`' && pos + CODE_SEG.length() <= lastCodeSeg && regionMatches(src, pos, CODE_SEG)) {
+                // code-seg (only if it will be closed)
+                paraOpen = closeParagraph(paraOpen, out);
+                int end = indexOf(src, CODE_SEG, pos + CODE_SEG.length());
+                renderCode(src, pos + CODE_SEG.length(), end, out);
+                pos = end + CODE_SEG.length();
+            } else if (c == '<' && pos + JSH_START.length() <= lastJshEnd && regionMatches(src, pos, JSH_START)) {
+                // jsh-directive (only if it will be closed - else it is text)
+                paraOpen = closeParagraph(paraOpen, out);
+                pos = indexOf(src, JSH_END, pos + JSH_START.length()) + JSH_END.length();
+            } else if (c == '<' && regionMatches(src, pos, BR)) {
+                paraOpen = openParagraph(paraOpen, out);
+                out.append(BR);
+                pos += BR.length();
+            } else if (c == '\n') {
+                int next = pos + 1;
+                while (next < len && src.charAt(next) != '\n' && Character.isWhitespace(src.charAt(next))) {
+                    next++;
+                }
+                if (next >= len || src.charAt(next) == '\n') {
+                    // blank line
+                    paraOpen = closeParagraph(paraOpen, out);
+                    pos = next;
+                } else {
+                    if (paraOpen) {
+                        out.append('\n');
+                    }
+                    pos++;
+                }
+            } else if (Character.isWhitespace(c) && !paraOpen) {
+                pos++;
+            } else {
+                paraOpen = openParagraph(paraOpen, out);
+                appendEscaped(src, pos, out);
+                pos++;
+            }
+        }
+        closeParagraph(paraOpen, out);
+    }
+
+    /**
+     * render the content of a code-seg: the first line is the language if it contains only a word
+     * @param src                the markdown-src
+     * @param start              start of the content behind the opening ```
+     * @param end                position of the closing ```
+     * @param out                the output to append the html to
+     * @throws IOException       possible Exception while appending
+     */
+    protected void renderCode(CharSequence src, int start, int end, Appendable out) throws IOException {
+        int pos = start;
+        while (pos < end && Character.isLetterOrDigit(src.charAt(pos))) {
+            pos++;
+        }
+        if (pos < end && src.charAt(pos) == '\n') {
+            start = pos + 1;
+        }
+
+        out.append("<pre><code>");
+        for (pos = start; pos < end; pos++) {
+            appendEscaped(src, pos, out);
+        }
+        out.append("</code></pre>\n");
+    }
+
+    protected boolean openParagraph(boolean paraOpen, Appendable out) throws IOException {
+        if (!paraOpen) {
+            out.append("<p>");
+        }
+        return true;
+    }
+
+    protected boolean closeParagraph(boolean paraOpen, Appendable out) throws IOException {
+        if (paraOpen) {
+            out.append("</p>\n");
+        }
+        return false;
+    }
+
+    /**
+     * append the char at the position html-escaped: a &amp; which starts an entity is kept
+     * @param src                the markdown-src
+     * @param pos                the position of the char
+     * @param out                the output to append the html to
+     * @throws IOException       possible Exception while appending
+     */
+    protected void appendEscaped(CharSequence src, int pos, Appendable out) throws IOException {
+        char c = src.charAt(pos);
+        switch (c) {
+            case '<':
+                out.append("&lt;");
+                break;
+            case '>':
+                out.append("&gt;");
+                break;
+            case '"':
+                out.append("&quot;");
+                break;
+            case '&':
+                out.append(isEntity(src, pos) ? "&" : "&amp;");
+                break;
+            default:
+                out.append(c);
+        }
+    }
+
+    /**
+     * check if an entity (&amp;name; or &amp;#123;) starts at the position
+     * @param src                the markdown-src
+     * @param pos                the position of the &amp;
+     * @return                   true if an entity starts at the position
+     */
+    protected boolean isEntity(CharSequence src, int pos) {
+        int end = Math.min(src.length(), pos + MAX_ENTITY_LENGTH);
+        int i = pos + 1;
+        if (i < end && src.charAt(i) == '#') {
+            i++;
+        }
+        int nameStart = i;
+        while (i < end && Character.isLetterOrDigit(src.charAt(i))) {
+            i++;
+        }
+        return i > nameStart && i < end && src.charAt(i) == ';';
+    }
+
+    protected boolean regionMatches(CharSequence text, int pos, String needle) {
+        if (pos + needle.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < needle.length(); i++) {
+            if (text.charAt(pos + i) != needle.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected int indexOf(CharSequence text, String needle, int from) {
+        for (int pos = from; pos + needle.length() <= text.length(); pos++) {
+            if (regionMatches(text, pos, needle)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    protected int lastIndexOf(CharSequence text, String needle) {
+        for (int pos = text.length() - needle.length(); pos >= 0; pos--) {
+            if (regionMatches(text, pos, needle)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+}
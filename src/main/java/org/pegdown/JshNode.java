@@ -13,20 +13,18 @@
  */
 package org.pegdown;
 
-import org.pegdown.ast.TextNode;
-import org.pegdown.ast.Visitor;
+import org.parboiled.buffers.InputBuffer;
 
 /**
  * a node for extended jsh-syntax
  */
-public class JshNode extends TextNode {
+public class JshNode extends JshTextNode {
 
     public JshNode(String text) {
         super(text);
     }
 
-    @Override
-    public void accept(Visitor visitor) {
-        visitor.visit(this);
+    public JshNode(InputBuffer inputBuffer, int start, int end, boolean trim, boolean flyweight) {
+        super(inputBuffer, start, end, trim, flyweight);
     }
 }
@@ -13,20 +13,19 @@
  */
 package org.pegdown;
 
-import org.pegdown.ast.TextNode;
-import org.pegdown.ast.Visitor;
+import org.parboiled.buffers.InputBuffer;
 
 /**
- * a node for extended jsh-syntax: splitter-label
+ * a node for extended jsh-syntax: splitter-label as text
+ * the parser creates JshNodeSplitterLabel with the parsed inlines instead
  */
-public class JshNodeSplitter1 extends TextNode {
+public class JshNodeSplitter1 extends JshTextNode {
 
     public JshNodeSplitter1(String text) {
         super(text);
     }
 
-    @Override
-    public void accept(Visitor visitor) {
-        visitor.visit(this);
+    public JshNodeSplitter1(InputBuffer inputBuffer, int start, int end, boolean trim, boolean flyweight) {
+        super(inputBuffer, start, end, trim, flyweight);
     }
 }
@@ -13,20 +13,19 @@
  */
 package org.pegdown;
 
-import org.pegdown.ast.TextNode;
-import org.pegdown.ast.Visitor;
+import org.parboiled.buffers.InputBuffer;
 
 /**
- * a node for extended jsh-syntax: splitter-text
+ * a node for extended jsh-syntax: splitter-text as text
+ * the parser creates JshNodeSplitterValue with the parsed inlines instead
  */
-public class JshNodeSplitter2 extends TextNode {
+public class JshNodeSplitter2 extends JshTextNode {
 
     public JshNodeSplitter2(String text) {
         super(text);
     }
 
-    @Override
-    public void accept(Visitor visitor) {
-        visitor.visit(this);
+    public JshNodeSplitter2(InputBuffer inputBuffer, int start, int end, boolean trim, boolean flyweight) {
+        super(inputBuffer, start, end, trim, flyweight);
     }
 }
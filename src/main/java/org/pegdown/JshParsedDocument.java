@@ -0,0 +1,83 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.pegdown.ast.Node;
+import org.pegdown.ast.RootNode;
+
+import java.util.ArrayDeque;
+
+/**
+ * a parsed markdown-document which can be serialized many times with different JshConfigs
+ *
+ * the ast is only accessible in this package: the serializers only read it, so the document can be
+ * cached and serialized by many threads at once. all state of a serialization (STYLE-directives,
+ * element-ids...) is held by the serializer and its render-context.
+ */
+public class JshParsedDocument {
+    /** approximated bytes per node of the ast for cache-weights */
+    protected static final int WEIGHT_PER_NODE = 128;
+
+    protected final RootNode rootNode;
+    protected final int sourceLength;
+    protected volatile int nodeCount = -1;
+
+    /**
+     * create the document
+     * @param rootNode           the root of the ast
+     * @param sourceLength       the length of the parsed src
+     */
+    protected JshParsedDocument(RootNode rootNode, int sourceLength) {
+        this.rootNode = rootNode;
+        this.sourceLength = sourceLength;
+    }
+
+    protected RootNode getRootNode() {
+        return rootNode;
+    }
+
+    public int getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * get the count of nodes of the ast (counted on first call)
+     * @return                   the count of nodes
+     */
+    public int getNodeCount() {
+        int res = nodeCount;
+        if (res < 0) {
+            res = 0;
+            ArrayDeque<Node> stack = new ArrayDeque<>();
+            stack.push(rootNode);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                res++;
+                for (Node child : node.getChildren()) {
+                    stack.push(child);
+                }
+            }
+            nodeCount = res;
+        }
+        return res;
+    }
+
+    /**
+     * get the approximated size of the document in bytes (for cache-weights)
+     * @return                   the weight
+     */
+    public long getWeight() {
+        return 2L * sourceLength + (long) WEIGHT_PER_NODE * getNodeCount();
+    }
+}
@@ -15,12 +15,22 @@ package org.pegdown;
 
 import org.parboiled.Rule;
 import org.parboiled.common.ArrayBuilder;
+import org.pegdown.ast.Node;
+import org.pegdown.ast.ParaNode;
+import org.pegdown.ast.TextNode;
 import org.pegdown.plugins.PegDownPlugins;
 
+import java.util.ArrayList;
+
 /**
  * the pegdown-parser with extended jsh-syntax
  */
 public class JshPegdownParser extends Parser{
+    /** the src to parse to replace the context of the last parsing: see releaseContext */
+    protected static final char[] EMPTY_SOURCE = new char[0];
+
+    /** create the jsh-nodes with offsets into the input-buffer instead of copies of their texts */
+    protected boolean flyweightNodes = true;
 
     public JshPegdownParser(Integer options, Long maxParsingTimeInMillis, ParseRunnerProvider parseRunnerProvider, PegDownPlugins plugins) {
         super(options, maxParsingTimeInMillis, parseRunnerProvider, plugins);
@@ -30,12 +40,35 @@ public class JshPegdownParser extends Parser{
         this(options, maxParsingTimeInMillis, parseRunnerProvider, PegDownPlugins.NONE);
     }
 
+    public boolean isFlyweightNodes() {
+        return flyweightNodes;
+    }
+
+    /**
+     * create the jsh-nodes as flyweights with offsets into the input-buffer: the ast holds the src
+     * instead of copies of the texts of the nodes
+     * @param flyweightNodes     use flyweight-nodes
+     */
+    public void setFlyweightNodes(boolean flyweightNodes) {
+        this.flyweightNodes = flyweightNodes;
+    }
+
+    /**
+     * drop the reference to the context of the last parsing: it holds the input-buffer, the value-stack
+     * and the memoized mismatches of the complete document. the parsers are reused per thread,
+     * so without this every thread retains the state of its last document.
+     * parboiled only allows to set a non-null context, so an empty src is parsed to replace it.
+     */
+    public void releaseContext() {
+        parse(EMPTY_SOURCE);
+    }
+
     @Override
     public Rule NonLinkInline() {
         return FirstOf(new ArrayBuilder<Rule>()
                 .add(plugins.getInlinePluginRules())
-                .add(JshInline(), Str(), Endline(), UlOrStarLine(), Space(), StrongOrEmph(), Image(), Code(), JshBlock(), InlineHtml(), JshBlock(),
-                        Entity(), EscapedChar(), JshInline())
+                .add(Str(), Endline(), UlOrStarLine(), Space(), StrongOrEmph(), Image(), Code(), JshOrInlineHtml(),
+                        Entity(), EscapedChar())
                 .addNonNulls(ext(QUOTES) ? new Rule[]{SingleQuoted(), DoubleQuoted(), DoubleAngleQuoted()} : null)
                 .addNonNulls(ext(SMARTS) ? new Rule[]{Smarts()} : null)
                 .addNonNulls(ext(STRIKETHROUGH) ? new Rule[]{Strike()} : null)
@@ -52,25 +85,41 @@ public class JshPegdownParser extends Parser{
                         .add(plugins.getBlockPluginRules())
                         .add(BlockQuote(), Verbatim())
                         .addNonNulls(ext(ABBREVIATIONS) ? Abbreviation() : null)
-                        .add(JshInline(), Reference(), HorizontalRule(), Heading(), OrderedList(), BulletList(), JshBlock(), HtmlBlock(), JshBlock(), JshInline())
+                        .add(Reference(), HorizontalRule(), Heading(), OrderedList(), BulletList(), JshOrHtmlBlock())
                         .addNonNulls(ext(TABLES) ? Table() : null)
                         .addNonNulls(ext(DEFINITIONS) ? DefinitionList() : null)
                         .addNonNulls(ext(FENCED_CODE_BLOCKS) ? FencedCodeBlock() : null)
-                        .add(Para(), Inlines())
+                        .add(JshInline(), Para(), Inlines())
                         .get()
                 )
         );
     }
 
+    /**
+     * generate rule to extract jsh-blocks or inline-html: both only tried if the next char is a "<"
+     * @return     rule to extract jsh-blocks or inline-html
+     */
+    public Rule JshOrInlineHtml() {
+        return Sequence(Test('<'), FirstOf(JshBlock(), InlineHtml()));
+    }
+
+    /**
+     * generate rule to extract jsh-blocks or html-blocks: both only tried if the next char is a "<"
+     * @return     rule to extract jsh-blocks or html-blocks
+     */
+    public Rule JshOrHtmlBlock() {
+        return Sequence(Test('<'), FirstOf(JshBlock(), HtmlBlock()));
+    }
+
     /**
      * generate rule to extract jsh-blocks
      * @return     rule to extract jsh-blocks
      */
     public Rule JshBlock() {
-        return NodeSequence(FirstOf(new ArrayBuilder<Rule>()
+        return Sequence(Test("<!---"), NodeSequence(FirstOf(new ArrayBuilder<Rule>()
                 .addNonNulls(new Rule[]{JshHtmlComment()})
                 .get())
-        );
+        ));
     }
 
     /**
@@ -82,13 +131,14 @@ public class JshPegdownParser extends Parser{
         rule = Sequence(
                 "<!---",
                 OneOrMore(TestNot(Sequence("---", ">")), ANY), // might have to restrict from ANY
-                push(new JshNode(match())),
+                push(new JshNode(getContext().getInputBuffer(), matchStart(), matchEnd(), false, flyweightNodes)),
                 "--->");
         return rule;
     }
 
     /**
-     * generate rule to extract jsh-inlineblocks with commands like BOX...
+     * generate rule to extract jsh-inlineblocks like splitter-lines
+     * only used as block: the rules are bounded to the current line so they are only tried once per block
      * @return     rule to extract jsh-inlineblocks
      */
     public Rule JshInline() {
@@ -99,20 +149,36 @@ public class JshPegdownParser extends Parser{
     }
 
     /**
-     * generate rule to extract jsh-splitter
+     * generate rule to extract a jsh-splitter-line "label :|: value" as paragraph with label and value
+     * label and value are parsed as inlines like the rest of the paragraph
      * @return     rule to extract jsh-splitter
      */
     public Rule JshSplitter() {
-        // TODO - not functional
         Rule rule;
         rule = Sequence(
-                Test(OneOrMore(TestNot(":|:"), ANY)),
-                push(new JshNodeSplitter1(match())),
-                ":|:",
-                Test(OneOrMore(TestNot(":|:"), ANY)),
-                push(new JshNodeSplitter2(match()))
+                NonindentSpace(),
+                // cheap test of the line before the inlines are parsed
+                Test(OneOrMore(TestNot(":|:"), NotNewline(), ANY), ":|:"),
+                push(new ParaNode(new ArrayList<Node>())),
+                push(new JshNodeSplitterLabel()),
+                OneOrMore(TestNot(Sp(), ":|:"), TestNot(Sp(), Newline()), JshSplitterInline(), addAsChild()),
+                addAsChild(),
+                Sp(), ":|:", Sp(),
+                push(new JshNodeSplitterValue()),
+                ZeroOrMore(TestNot(Sp(), Newline()), JshSplitterInline(), addAsChild()),
+                addAsChild(),
+                Sp(), Newline()
                 );
         return rule;
     }
-}
 
+    /**
+     * generate rule for the inlines of splitter-lines: plain text stops in front of ":|:"
+     * @return     rule to extract an inline of a splitter-line
+     */
+    public Rule JshSplitterInline() {
+        return FirstOf(
+                Sequence(OneOrMore(TestNot(":|:"), NormalChar()), push(new TextNode(match()))),
+                Inline());
+    }
+}
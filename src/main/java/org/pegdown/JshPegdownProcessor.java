@@ -14,10 +14,12 @@
 package org.pegdown;
 
 import org.parboiled.Parboiled;
-import org.pegdown.ast.RootNode;
+import org.parboiled.errors.ParserRuntimeException;
 import org.pegdown.plugins.PegDownPlugins;
 import org.pegdown.plugins.ToHtmlSerializerPlugin;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +28,8 @@ import java.util.Map;
  */
 public class JshPegdownProcessor extends PegDownProcessor {
     protected JshConfig config;
+    protected JshRenderListener listener = JshRenderListener.NONE;
+    protected boolean flyweightNodes = true;
 
     /**
      * Creates a new processor instance without any enabled extensions and the default parsing timeout.
@@ -96,11 +100,253 @@ public class JshPegdownProcessor extends PegDownProcessor {
                                  LinkRenderer linkRenderer,
                                  Map<String, VerbatimSerializer> verbatimSerializerMap,
                                  List<ToHtmlSerializerPlugin> plugins) {
+        return markdownToHtml(markdownSource, linkRenderer, verbatimSerializerMap, plugins, createRenderContext());
+    }
+
+    /**
+     * Creates a render-context with the config and the listener of this processor.
+     *
+     * @return the context for one rendering
+     */
+    public JshRenderContext createRenderContext() {
+        JshRenderContext context = new JshRenderContext(this.config);
+        context.setListener(this.listener);
+        return context;
+    }
+
+    public boolean isFlyweightNodes() {
+        return flyweightNodes;
+    }
+
+    /**
+     * Sets the mode of the jsh-nodes: flyweights with offsets into the shared source (true)
+     * or with copies of their texts (false).
+     *
+     * @param flyweightNodes use flyweight-nodes
+     */
+    public void setFlyweightNodes(boolean flyweightNodes) {
+        this.flyweightNodes = flyweightNodes;
+    }
+
+    public JshRenderListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener for the metrics of the renderings with contexts created by this processor.
+     *
+     * @param listener the listener (JshRenderListener.NONE to disable the metrics)
+     */
+    public void setListener(JshRenderListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Converts the given markdown source to HTML with the element-ids and state of the given render-context.
+     *
+     * @param markdownSource the markdown source to convert
+     * @param context the context of this rendering
+     * @return the HTML
+     */
+    public String markdownToHtml(String markdownSource, JshRenderContext context) {
+        return markdownToHtml(toSource(markdownSource), new LinkRenderer(),
+                Collections.<String, VerbatimSerializer>emptyMap(), parser.plugins.getHtmlSerializerPlugins(), context);
+    }
+
+    /**
+     * Converts the given markdown source to HTML and appends it to the given output
+     * without building an intermediate string. The serialized HTML is still held in the buffer
+     * of the serializer until it is appended, so this does not lower the peak memory.
+     *
+     * @param markdownSource the markdown source to convert
+     * @param context the context of this rendering
+     * @param out the output to append the HTML to
+     * @return false if the parsing timed out and nothing was appended
+     * @throws IOException if appending to the output fails
+     */
+    public boolean markdownToHtml(char[] markdownSource, JshRenderContext context, Appendable out) throws IOException {
+        CharSequence html = markdownToHtmlBuffer(markdownSource, new LinkRenderer(),
+                Collections.<String, VerbatimSerializer>emptyMap(), parser.plugins.getHtmlSerializerPlugins(), context);
+        if (html == null) {
+            return false;
+        }
+        out.append(html);
+        return true;
+    }
+
+    /**
+     * Converts the given markdown source to HTML with the element-ids and state of the given render-context.
+     *
+     * @param markdownSource the markdown source to convert
+     * @param linkRenderer the LinkRenderer to use
+     * @param verbatimSerializerMap the VerbatimSerializers to use
+     * @param plugins the ToHtmlSerializerPlugins to use
+     * @param context the context of this rendering
+     * @return the HTML
+     */
+    public String markdownToHtml(char[] markdownSource,
+                                 LinkRenderer linkRenderer,
+                                 Map<String, VerbatimSerializer> verbatimSerializerMap,
+                                 List<ToHtmlSerializerPlugin> plugins,
+                                 JshRenderContext context) {
+        CharSequence html = markdownToHtmlBuffer(markdownSource, linkRenderer, verbatimSerializerMap, plugins, context);
+        return html != null ? html.toString() : null;
+    }
+
+    /**
+     * Converts the given markdown source to HTML and returns the buffer of the serializer without copying it.
+     *
+     * @param markdownSource the markdown source to convert
+     * @param linkRenderer the LinkRenderer to use
+     * @param verbatimSerializerMap the VerbatimSerializers to use
+     * @param plugins the ToHtmlSerializerPlugins to use
+     * @param context the context of this rendering
+     * @return the HTML-buffer or null if the parsing timed out
+     */
+    public CharSequence markdownToHtmlBuffer(char[] markdownSource,
+                                             LinkRenderer linkRenderer,
+                                             Map<String, VerbatimSerializer> verbatimSerializerMap,
+                                             List<ToHtmlSerializerPlugin> plugins,
+                                             JshRenderContext context) {
+        boolean ownMetrics = context.startMetrics(markdownSource.length);
+        CharSequence html = null;
+        try {
+            JshParsedDocument document = parseDocument(markdownSource, context);
+            if (document != null) {
+                html = toHtmlBuffer(document, linkRenderer, verbatimSerializerMap, plugins, context);
+            }
+        } finally {
+            if (ownMetrics) {
+                context.finishMetrics(html != null ? html.length() : 0);
+            }
+        }
+        return html;
+    }
+
+    /**
+     * Parses the given markdown source into a document which can be serialized many times with different configs.
+     * The source is copied only once into the buffer of the parser.
+     *
+     * @param markdownSource the markdown source to parse
+     * @param context the context to report the metrics and timeout to or null
+     * @return the document or null if the parsing timed out
+     */
+    public JshParsedDocument parseDocument(CharSequence markdownSource, JshRenderContext context) {
+        return parseDocument(toSource(markdownSource), context);
+    }
+
+    /**
+     * Copies the markdown source into a buffer for the parser: terminated by a blank line like prepareSource does.
+     *
+     * @param markdownSource the markdown source
+     * @return the buffer
+     */
+    public char[] toSource(CharSequence markdownSource) {
+        int len = markdownSource.length();
+        char[] source = new char[len + 2];
+        if (markdownSource instanceof String) {
+            ((String) markdownSource).getChars(0, len, source, 0);
+        } else if (markdownSource instanceof StringBuilder) {
+            ((StringBuilder) markdownSource).getChars(0, len, source, 0);
+        } else {
+            for (int i = 0; i < len; i++) {
+                source[i] = markdownSource.charAt(i);
+            }
+        }
+        source[len] = '\n';
+        source[len + 1] = '\n';
+        return source;
+    }
+
+    /**
+     * Returns the source itself if it is already terminated by a blank line, otherwise a terminated copy.
+     *
+     * @param source the markdown source
+     * @return the source for the parser
+     */
+    @Override
+    public char[] prepareSource(char[] source) {
+        int len = source.length;
+        if (len >= 2 && source[len - 2] == '\n' && source[len - 1] == '\n') {
+            return source;
+        }
+        return super.prepareSource(source);
+    }
+
+    /**
+     * Parses the given markdown source into a document which can be serialized many times with different configs.
+     *
+     * @param markdownSource the markdown source to parse
+     * @param context the context to report the metrics and timeout to or null
+     * @return the document or null if the parsing timed out or overflowed the stack
+     */
+    public JshParsedDocument parseDocument(char[] markdownSource, JshRenderContext context) {
+        JshRenderMetrics metrics = context != null ? context.getMetrics() : null;
+        if (parser instanceof JshPegdownParser) {
+            ((JshPegdownParser) parser).setFlyweightNodes(flyweightNodes);
+        }
+        long start = metrics != null ? System.nanoTime() : 0;
         try {
-            RootNode astRoot = parseMarkdown(markdownSource);
-            return new JshPegdownToHtmlSerializer(this.config, linkRenderer, verbatimSerializerMap, plugins).toHtml(astRoot);
+            JshParsedDocument document = new JshParsedDocument(parseMarkdown(markdownSource), markdownSource.length);
+            if (metrics != null) {
+                metrics.addPhaseNanos(JshRenderPhase.PARSE, System.nanoTime() - start);
+            }
+            return document;
         } catch(ParsingTimeoutException e) {
-            return null;
+            parsingTimeout(context, start);
+        } catch(ParserRuntimeException e) {
+            // parboiled wraps the timeout if it occurs in a parser-action and errors like a stack-overflow
+            // on deeply nested inlines: both are handled like a timeout
+            if (!(e.getCause() instanceof ParsingTimeoutException) && !(e.getCause() instanceof StackOverflowError)) {
+                throw e;
+            }
+            parsingTimeout(context, start);
+        } finally {
+            if (parser instanceof JshPegdownParser) {
+                ((JshPegdownParser) parser).releaseContext();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Serializes the parsed document to HTML with the config, element-ids and state of the given render-context
+     * and returns the buffer of the serializer without copying it. The document is not changed.
+     *
+     * @param document the parsed document
+     * @param linkRenderer the LinkRenderer to use
+     * @param verbatimSerializerMap the VerbatimSerializers to use
+     * @param plugins the ToHtmlSerializerPlugins to use
+     * @param context the context of this rendering
+     * @return the HTML-buffer
+     */
+    public CharSequence toHtmlBuffer(JshParsedDocument document,
+                                     LinkRenderer linkRenderer,
+                                     Map<String, VerbatimSerializer> verbatimSerializerMap,
+                                     List<ToHtmlSerializerPlugin> plugins,
+                                     JshRenderContext context) {
+        JshRenderMetrics metrics = context.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        CharSequence html = new JshPegdownToHtmlSerializer(context, linkRenderer, verbatimSerializerMap, plugins)
+                .toHtmlBuffer(document.getRootNode());
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.SERIALIZE, System.nanoTime() - start);
+            metrics.setNodeCount(document.getNodeCount());
+        }
+        return html;
+    }
+
+    /**
+     * report the parsing-timeout to the listener of the context
+     * @param context the context of this rendering or null
+     * @param start the start of the parsing in ns (only set if metrics are collected)
+     */
+    protected void parsingTimeout(JshRenderContext context, long start) {
+        JshRenderMetrics metrics = context != null ? context.getMetrics() : null;
+        if (metrics != null) {
+            metrics.addPhaseNanos(JshRenderPhase.PARSE, System.nanoTime() - start);
+            metrics.setParsingTimeout(true);
+            context.getListener().parsingTimeout(context, metrics);
         }
     }
 }
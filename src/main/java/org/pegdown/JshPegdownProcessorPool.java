@@ -0,0 +1,139 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.parboiled.Parboiled;
+import org.pegdown.plugins.PegDownPlugins;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * pool of reusable jsh-pegdown-processors
+ *
+ * creating a parser with Parboiled.createParser generates and loads the parser-bytecode, so this is
+ * done only once per thread and options. pegdown-parsers are not thread-safe: every thread gets
+ * its own parser-instance and the processors returned must only be used by the calling thread.
+ * the JshConfig is only used while serializing, so the processor itself is only a cheap wrapper
+ * around the pooled parser.
+ */
+public class JshPegdownProcessorPool {
+    /** max count of parsers cached per thread before the thread-cache is dropped */
+    public static final int DEFAULT_MAX_PARSERS_PER_THREAD = 16;
+
+    protected final int maxParsersPerThread;
+
+    protected final ThreadLocal<Map<ParserKey, JshPegdownParser>> parsers = new ThreadLocal<Map<ParserKey, JshPegdownParser>>() {
+        @Override
+        protected Map<ParserKey, JshPegdownParser> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    public JshPegdownProcessorPool() {
+        this(DEFAULT_MAX_PARSERS_PER_THREAD);
+    }
+
+    public JshPegdownProcessorPool(int maxParsersPerThread) {
+        this.maxParsersPerThread = maxParsersPerThread;
+    }
+
+    /**
+     * get a processor for the current thread with default parsing timeout and without plugins
+     * @param config            the jsh-configuration for style-prefix and appBaseName...
+     * @param options           the flags of the extensions to enable as a bitmask
+     * @return                  processor to use only in the current thread
+     */
+    public JshPegdownProcessor getProcessor(JshConfig config, int options) {
+        return getProcessor(config, options, PegDownProcessor.DEFAULT_MAX_PARSING_TIME, PegDownPlugins.NONE);
+    }
+
+    /**
+     * get a processor for the current thread
+     * @param config                 the jsh-configuration for style-prefix and appBaseName...
+     * @param options                the flags of the extensions to enable as a bitmask
+     * @param maxParsingTimeInMillis the parsing timeout
+     * @param plugins                the plugins to use
+     * @return                       processor to use only in the current thread
+     */
+    public JshPegdownProcessor getProcessor(JshConfig config, int options, long maxParsingTimeInMillis,
+                                            PegDownPlugins plugins) {
+        return new JshPegdownProcessor(config, getParser(options, maxParsingTimeInMillis, plugins));
+    }
+
+    /**
+     * get the parser for the current thread - create it if it not exists
+     * @param options                the flags of the extensions to enable as a bitmask
+     * @param maxParsingTimeInMillis the parsing timeout
+     * @param plugins                the plugins to use
+     * @return                       parser to use only in the current thread
+     */
+    protected JshPegdownParser getParser(int options, long maxParsingTimeInMillis, PegDownPlugins plugins) {
+        Map<ParserKey, JshPegdownParser> threadParsers = parsers.get();
+        ParserKey key = new ParserKey(options, maxParsingTimeInMillis, plugins);
+        JshPegdownParser parser = threadParsers.get(key);
+        if (parser == null) {
+            if (threadParsers.size() >= maxParsersPerThread) {
+                threadParsers.clear();
+            }
+            parser = Parboiled.createParser(JshPegdownParser.class, options, maxParsingTimeInMillis,
+                    JshPegdownParser.DefaultParseRunnerProvider, plugins);
+            threadParsers.put(key, parser);
+        }
+        return parser;
+    }
+
+    /**
+     * drop the parsers of the current thread
+     */
+    public void clearCurrentThread() {
+        parsers.remove();
+    }
+
+    /**
+     * key for the parsers: plugins are compared by identity
+     */
+    protected static class ParserKey {
+        protected final int options;
+        protected final long maxParsingTimeInMillis;
+        protected final PegDownPlugins plugins;
+
+        protected ParserKey(int options, long maxParsingTimeInMillis, PegDownPlugins plugins) {
+            this.options = options;
+            this.maxParsingTimeInMillis = maxParsingTimeInMillis;
+            this.plugins = plugins;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ParserKey)) {
+                return false;
+            }
+            ParserKey other = (ParserKey) o;
+            return options == other.options && maxParsingTimeInMillis == other.maxParsingTimeInMillis
+                    && plugins == other.plugins;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = options;
+            result = 31 * result + (int) (maxParsingTimeInMillis ^ (maxParsingTimeInMillis >>> 32));
+            result = 31 * result + System.identityHashCode(plugins);
+            return result;
+        }
+    }
+}
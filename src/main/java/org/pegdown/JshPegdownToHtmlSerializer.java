@@ -14,20 +14,45 @@
 package org.pegdown;
 
 import org.apache.commons.lang3.StringUtils;
+import org.pegdown.ast.CodeNode;
+import org.pegdown.ast.HeaderNode;
+import org.pegdown.ast.RootNode;
 import org.pegdown.ast.SuperNode;
 import org.pegdown.ast.TextNode;
 import org.pegdown.plugins.ToHtmlSerializerPlugin;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class JshPegdownToHtmlSerializer extends ToHtmlSerializer {
 
     private static final org.apache.log4j.Logger LOGGER = org.apache.log4j.Logger.getLogger(JshPegdownToHtmlSerializer.class);
+    /** default serializers for code-blocks by language-prefix: the first matching prefix wins */
+    public static final Map<String, JshCodeSerializer> DEFAULT_CODE_SERIALIZERS;
+    static {
+        Map<String, JshCodeSerializer> serializers = new LinkedHashMap<>();
+        serializers.put("mermaid", new JshDiagramCodeSerializer("inlineMermaid", "mermaid"));
+        serializers.put("yaiofreemind", new JshDiagramCodeSerializer("inlineMindmap", "yaiomindmap"));
+        serializers.put("yaiomindmap", new JshDiagramCodeSerializer("inlineMindmap", "yaiomindmap"));
+        serializers.put("yaioplantuml", new JshDiagramCodeSerializer("yaioplantuml", "yaioplantuml"));
+        serializers.put("ymffreemind", new JshDiagramCodeSerializer("inlineMindmap", "ymfmindmap"));
+        serializers.put("ymfmindmap", new JshDiagramCodeSerializer("inlineMindmap", "ymfmindmap"));
+        serializers.put("ymfplantuml", new JshDiagramCodeSerializer("ymfplantuml", "ymfplantuml"));
+        serializers.put(JshCodeSerializer.DEFAULT, JshDefaultCodeSerializer.INSTANCE);
+        DEFAULT_CODE_SERIALIZERS = Collections.unmodifiableMap(serializers);
+    }
+
+    protected JshRenderContext context;
     protected JshConfig config;
     protected JshRenderer jshRenderer;
+    protected Map<String, JshCodeSerializer> codeSerializers = DEFAULT_CODE_SERIALIZERS;
+    protected JshAbbreviationMatcher abbreviationMatcher;
+    protected int abbreviationMatcherSize;
+    protected RootNode rootNode;
+    /** collects headings and TOC-placeholders for the static TOCs (JshTocMode.SERVER) or null */
+    protected JshTocBuilder tocBuilder;
 
     public JshPegdownToHtmlSerializer(JshConfig config, LinkRenderer linkRenderer) {
         this(config, linkRenderer, Collections.<ToHtmlSerializerPlugin>emptyList());
@@ -42,10 +67,57 @@ public class JshPegdownToHtmlSerializer extends ToHtmlSerializer {
     }
 
     public JshPegdownToHtmlSerializer(JshConfig config, final LinkRenderer linkRenderer, final Map<String, VerbatimSerializer> verbatimSerializers, final List<ToHtmlSerializerPlugin> plugins) {
+        this(new JshRenderContext(config), linkRenderer, verbatimSerializers, plugins);
+    }
+
+    public JshPegdownToHtmlSerializer(JshRenderContext context, final LinkRenderer linkRenderer, final Map<String, VerbatimSerializer> verbatimSerializers, final List<ToHtmlSerializerPlugin> plugins) {
         super(linkRenderer, verbatimSerializers, plugins);
-        this.config = config;
-        this.jshRenderer = new JshRenderer(this.config);
+        this.context = context;
+        this.config = context.getConfig();
+        this.jshRenderer = new JshRenderer(this.context);
         jshRenderer.initStylesClassesForTags(this.config.getStylePrefix());
+        if (config.getTocMode() == JshTocMode.SERVER) {
+            initServerToc();
+        }
+    }
+
+    /**
+     * render the TOC-directive as placeholder which is filled with the headings after the serialization
+     */
+    protected void initServerToc() {
+        tocBuilder = new JshTocBuilder();
+        jshRenderer.registerDirectiveHandler("TOC", new JshDirectiveHandler(JshDirectiveHandler.TOGGLER_PARAM_CHARS) {
+            @Override
+            public String render(JshRenderer renderer, String keyword, String param) {
+                // the position of the placeholder is needed: print directly
+                renderServerToc();
+                return "";
+            }
+        });
+    }
+
+    /**
+     * serialize the tree into the buffer of the printer without copying it into a string
+     * @param astRoot            the tree to serialize
+     * @return                   the buffer with the html
+     */
+    public CharSequence toHtmlBuffer(RootNode astRoot) {
+        rootNode = astRoot;
+        astRoot.accept(this);
+        if (tocBuilder != null) {
+            tocBuilder.fillPlaceholders(printer.sb);
+        }
+        printer.sb.delete(0, context.getPrecedingOutput().length());
+        return printer.sb;
+    }
+
+    @Override
+    protected void visitChildren(SuperNode node) {
+        if (node == rootNode) {
+            // continue after the preceding output (references and abbreviations are printed and cleared before)
+            printer.print(context.getPrecedingOutput());
+        }
+        super.visitChildren(node);
     }
 
     /*
@@ -69,6 +141,81 @@ public class JshPegdownToHtmlSerializer extends ToHtmlSerializer {
         super.visit(node);
     }
 
+    @Override
+    public void visit(SuperNode node) {
+        if (node instanceof JshNodeSplitterLabel) {
+            renderJshNodeSplitterPart("label", "splitter1", node);
+            return;
+        }
+        if (node instanceof JshNodeSplitterValue) {
+            renderJshNodeSplitterPart("span", "splitter2", node);
+            return;
+        }
+        super.visit(node);
+    }
+
+    @Override
+    public void visit(CodeNode node) {
+        String text = node.getText();
+        if (!isCodeSeg(text, 0, text.length())) {
+            super.visit(node);
+            return;
+        }
+
+        JshCodeSerializer serializer = null;
+        String code = text;
+        String type = null;
+        for (Map.Entry<String, JshCodeSerializer> entry : codeSerializers.entrySet()) {
+            String prefix = entry.getKey();
+            if (!JshCodeSerializer.DEFAULT.equals(prefix) && text.startsWith(prefix)) {
+                serializer = entry.getValue();
+                code = text.substring(prefix.length());
+                type = prefix;
+                break;
+            }
+        }
+        if (serializer == null) {
+            serializer = codeSerializers.get(JshCodeSerializer.DEFAULT);
+        }
+        if (serializer == null) {
+            super.visit(node);
+            return;
+        }
+        String elementId = context.getIdAllocator().nextId();
+        serializer.serialize(node, code, elementId, printer);
+
+        JshRenderOutline outline = context.getOutline();
+        if (outline != null && serializer instanceof JshDiagramCodeSerializer) {
+            outline.addDiagram(type, ((JshDiagramCodeSerializer) serializer).getIdPrefix() + elementId);
+        }
+    }
+
+    @Override
+    public void visit(HeaderNode node) {
+        if (tocBuilder == null) {
+            // the heading-ids are added by the postprocessing
+            super.visit(node);
+            return;
+        }
+
+        // the headings of the static TOCs need their ids now
+        String tag = "h" + node.getLevel();
+        String headingId = "heading_" + context.getIdAllocator().nextId();
+        boolean startWasNewLine = printer.endsWithNewLine();
+        printer.println().print("<").print(tag).print(" id=\"").print(headingId).print("\"")
+                .print(jshRenderer.genStyleClassAttrForTag(tag)).print(">");
+        int textStart = printer.sb.length();
+        visitChildren(node);
+        String text = JshRenderOutline.extractText(printer.sb, textStart, printer.sb.length());
+        printer.print("<").print("/").print(tag).print(">");
+        if (startWasNewLine) printer.println();
+
+        tocBuilder.addHeading(node.getLevel(), headingId, text);
+        if (context.getOutline() != null) {
+            context.getOutline().addHeading(node.getLevel(), headingId, text);
+        }
+    }
+
     public void visit(JshNode node) {
         renderJshNode(node);
     }
@@ -85,6 +232,31 @@ public class JshPegdownToHtmlSerializer extends ToHtmlSerializer {
     public void renderJshNode(JshNode node) {
         printer.print(jshRenderer.renderJshNode(node));
     }
+    /**
+     * print the container of a static TOC and register the placeholder for its lists
+     */
+    protected void renderServerToc() {
+        String tocId = "jsh-md-toc-container-" + context.getIdAllocator().nextId();
+        printer.print("<div class=\"jsh-md-toc-container ").print(tocId).print("\" id=\"").print(tocId).print("\">");
+        tocBuilder.addPlaceholder(printer.sb.length());
+        printer.print("</div>");
+        if (context.getOutline() != null) {
+            context.getOutline().addToc(tocId);
+        }
+    }
+
+    /**
+     * render the label or value of a splitter-line with its inlines
+     * @param tag                the html-tag
+     * @param styleTag           the tag to generate the style-classes for
+     * @param node               the label or value
+     */
+    protected void renderJshNodeSplitterPart(String tag, String styleTag, SuperNode node) {
+        printer.print("<").print(tag).print(" class=\"").print(jshRenderer.genStyleClassesForTag(styleTag)).print("\">");
+        visitChildren(node);
+        printer.print("</").print(tag).print(">");
+    }
+
     public void renderJshNodeSplitter1(JshNodeSplitter1 node) {
         printer.print(jshRenderer.renderJshNodeSplitter1(node));
     }
@@ -92,6 +264,75 @@ public class JshPegdownToHtmlSerializer extends ToHtmlSerializer {
         printer.print(jshRenderer.renderJshNodeSplitter2(node));
     }
 
+    /**
+     * register a serializer for code-blocks with the language-prefix
+     * @param prefix             the language-prefix or JshCodeSerializer.DEFAULT
+     * @param serializer         the serializer for the code-blocks
+     */
+    public void registerCodeSerializer(String prefix, JshCodeSerializer serializer) {
+        Map<String, JshCodeSerializer> serializers = new LinkedHashMap<>(codeSerializers);
+        serializers.put(prefix, serializer);
+        codeSerializers = serializers;
+    }
+
+    /**
+     * register a handler for the jsh-directive with the keyword
+     * @param keyword            the keyword like "BOX" (end-directives are registered with "/BOX")
+     * @param handler            the handler for the directive
+     */
+    public void registerDirectiveHandler(String keyword, JshDirectiveHandler handler) {
+        jshRenderer.registerDirectiveHandler(keyword, handler);
+    }
+
+    /**
+     * check that all chars of the code-segment are printable, letters, marks, symbols, numbers,
+     * punctuation or blanks/linebreaks - code-segments with other chars (controls...) are rendered as plain code
+     * the single classifier for code-segments: use it for all renderers of code-nodes
+     * @param text                   the text with the code-segment
+     * @param start                  start of the code-segment
+     * @param end                    end of the code-segment
+     * @return                       true if the segment contains only allowed chars
+     */
+    public static boolean isCodeSeg(final CharSequence text, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            int c = Character.codePointAt(text, i);
+            if (Character.isSupplementaryCodePoint(c)) {
+                i++;
+            }
+            if ((c >= 0x20 && c <= 0x7E) || c == '\t' || c == '\n' || c == '\r') {
+                continue;
+            }
+            switch (Character.getType(c)) {
+                case Character.UPPERCASE_LETTER:
+                case Character.LOWERCASE_LETTER:
+                case Character.TITLECASE_LETTER:
+                case Character.MODIFIER_LETTER:
+                case Character.OTHER_LETTER:
+                case Character.NON_SPACING_MARK:
+                case Character.ENCLOSING_MARK:
+                case Character.COMBINING_SPACING_MARK:
+                case Character.MATH_SYMBOL:
+                case Character.CURRENCY_SYMBOL:
+                case Character.MODIFIER_SYMBOL:
+                case Character.OTHER_SYMBOL:
+                case Character.DECIMAL_DIGIT_NUMBER:
+                case Character.LETTER_NUMBER:
+                case Character.OTHER_NUMBER:
+                case Character.CONNECTOR_PUNCTUATION:
+                case Character.DASH_PUNCTUATION:
+                case Character.START_PUNCTUATION:
+                case Character.END_PUNCTUATION:
+                case Character.INITIAL_QUOTE_PUNCTUATION:
+                case Character.FINAL_QUOTE_PUNCTUATION:
+                case Character.OTHER_PUNCTUATION:
+                    continue;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
     /*
      * Override Renderer to add class-attribute
      */
@@ -168,39 +409,23 @@ public class JshPegdownToHtmlSerializer extends ToHtmlSerializer {
 
     @Override
     protected void printWithAbbreviations(String string) {
-        Map<Integer, Map.Entry<String, String>> expansions = null;
-
-        for (Map.Entry<String, String> entry : abbreviations.entrySet()) {
-            // first check, whether we have a legal match
-            String abbr = entry.getKey();
-
-            int ix = 0;
-            while (true) {
-                int sx = string.indexOf(abbr, ix);
-                if (sx == -1) break;
-
-                // only allow whole word matches
-                ix = sx + abbr.length();
-
-                if (sx > 0 && Character.isLetterOrDigit(string.charAt(sx - 1))) continue;
-                if (ix < string.length() && Character.isLetterOrDigit(string.charAt(ix))) {
-                    continue;
-                }
-
-                // ok, legal match so save an expansions "task" for all matches
-                if (expansions == null) {
-                    expansions = new TreeMap<Integer, Map.Entry<String, String>>();
-                }
-                expansions.put(sx, entry);
-            }
+        // build the automaton once per document: the abbreviations are only added while visiting the root
+        if (abbreviationMatcher == null || abbreviationMatcherSize != abbreviations.size()) {
+            abbreviationMatcher = new JshAbbreviationMatcher(abbreviations);
+            abbreviationMatcherSize = abbreviations.size();
         }
 
+        int[] expansions = abbreviationMatcher.findMatches(string);
         if (expansions != null) {
             int ix = 0;
-            for (Map.Entry<Integer, Map.Entry<String, String>> entry : expansions.entrySet()) {
-                int sx = entry.getKey();
-                String abbr = entry.getValue().getKey();
-                String expansion = entry.getValue().getValue();
+            for (int sx = 0; sx < expansions.length; sx++) {
+                if (expansions[sx] == 0 || sx < ix) {
+                    // no match or overlapping with the last match
+                    continue;
+                }
+                Map.Entry<String, String> entry = abbreviationMatcher.getEntry(expansions[sx] - 1);
+                String abbr = entry.getKey();
+                String expansion = entry.getValue();
 
                 printer.printEncoded(string.substring(ix, sx));
                 printer.print("<abbr");
@@ -0,0 +1,421 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * cheap scan of the prepared src in linear time for shapes which make the parser backtrack over huge ranges
+ *
+ * unclosed jsh-directives (&lt;!--- without ---&gt;) are tried at every position up to the end of the src:
+ * they are escaped, so they are rendered as text like before.
+ * consecutive splitter-lines (label :|: value) are tried as table at every line up to the last one:
+ * they are separated by blank lines, which renders the same paragraphs.
+ * unclosed [ and emphasis-openers (*, _) nest the inline-rules and deeply nested [] nest the serializer:
+ * a paragraph with too many of them sends the document to the safe path (fallback-renderer).
+ * code-segs (```) and closed jsh-directives are skipped like by the parser.
+ */
+public class JshPrescanner {
+    /** default max count of unclosed [ per paragraph: the parsing-time doubles with every one */
+    public static final int DEFAULT_MAX_OPEN_BRACKETS = 10;
+    /**
+     * default max count of unclosed emphasis-openers per paragraph: about 400 overflow the stack of the parser,
+     * lists of abbreviations (*[ABBR]: ...) have one per line
+     */
+    public static final int DEFAULT_MAX_OPEN_EMPHASIS = 250;
+    /** default max nesting of [ per paragraph: deeper nested links overflow the stack of the serializer */
+    public static final int DEFAULT_MAX_BRACKET_DEPTH = 100;
+
+    protected static final String CODE_SEG = "```";
+    protected static final String JSH_START = "<!---";
+    protected static final String JSH_END = "--->";
+    protected static final String SPLITTER = ":|:";
+
+    /**
+     * the shapes found by the prescan
+     */
+    public enum Reason {
+        /** jsh-directives without end: escaped */
+        UNCLOSED_DIRECTIVE,
+        /** consecutive splitter-lines: separated by blank lines */
+        SPLITTER_LINES,
+        /** too many unclosed [ in a paragraph: safe path */
+        OPEN_BRACKETS,
+        /** too deeply nested [] in a paragraph: safe path */
+        NESTED_BRACKETS,
+        /** too many unclosed emphasis-openers in a paragraph: safe path */
+        OPEN_EMPHASIS
+    }
+
+    protected int maxOpenBrackets = DEFAULT_MAX_OPEN_BRACKETS;
+    protected int maxOpenEmphasis = DEFAULT_MAX_OPEN_EMPHASIS;
+    protected int maxBracketDepth = DEFAULT_MAX_BRACKET_DEPTH;
+
+    /**
+     * scan the prepared src and neutralize the shapes which can be neutralized
+     * @param src                    the prepared src of the markdown
+     * @return                       the src to parse, the findings and the decision for the safe path
+     */
+    public Result scan(CharSequence src) {
+        Scan scan = new Scan(src);
+        scan.run();
+        return scan.getResult();
+    }
+
+    public int getMaxOpenBrackets() {
+        return maxOpenBrackets;
+    }
+
+    public void setMaxOpenBrackets(int maxOpenBrackets) {
+        this.maxOpenBrackets = maxOpenBrackets;
+    }
+
+    public int getMaxOpenEmphasis() {
+        return maxOpenEmphasis;
+    }
+
+    public void setMaxOpenEmphasis(int maxOpenEmphasis) {
+        this.maxOpenEmphasis = maxOpenEmphasis;
+    }
+
+    public int getMaxBracketDepth() {
+        return maxBracketDepth;
+    }
+
+    public void setMaxBracketDepth(int maxBracketDepth) {
+        this.maxBracketDepth = maxBracketDepth;
+    }
+
+    /**
+     * the fingerprint of the limits: the scan depends only on them - to use in cache-keys
+     * @return                       the limits as string
+     */
+    public String getFingerprint() {
+        return maxOpenBrackets + "|" + maxOpenEmphasis + "|" + maxBracketDepth;
+    }
+
+    /**
+     * the state of one scan
+     */
+    protected class Scan {
+        protected final CharSequence src;
+        protected final int len;
+        protected final int lastCodeSeg;
+        protected final int lastJshEnd;
+        protected final List<Finding> findings = new ArrayList<>();
+        protected boolean safePath;
+
+        /** the rewritten src - null as long as nothing is changed */
+        protected StringBuilder out;
+        protected int unchangedStart;
+
+        protected int paragraphStart;
+        protected int openBrackets;
+        protected int bracketDepth;
+        protected int openEmphasis;
+        protected int unclosedDirectives;
+        protected int firstUnclosedDirective = -1;
+        protected int splitterLines;
+        protected int firstSplitterLine = -1;
+
+        protected Scan(CharSequence src) {
+            this.src = src;
+            this.len = src.length();
+            this.lastCodeSeg = lastIndexOf(src, CODE_SEG);
+            this.lastJshEnd = lastIndexOf(src, JSH_END);
+        }
+
+        protected void run() {
+            boolean lineStart = true;
+            boolean prevBlank = true;
+            boolean prevSplitterBlock = false;
+            int pos = 0;
+            while (pos < len) {
+                if (lineStart) {
+                    lineStart = false;
+                    int lineEnd = indexOf(src, '\n', pos);
+                    if (isBlank(pos, lineEnd)) {
+                        endParagraph(lineEnd);
+                        prevBlank = true;
+                        prevSplitterBlock = false;
+                        pos = lineEnd + 1;
+                        lineStart = true;
+                        continue;
+                    }
+
+                    // a splitter-line at the start of a block is a block of its own
+                    boolean splitterBlock = (prevBlank || prevSplitterBlock) && isSplitterLine(pos, lineEnd);
+                    if (splitterBlock && prevSplitterBlock) {
+                        replace(pos, pos, "\n");
+                        splitterLines++;
+                        firstSplitterLine = firstSplitterLine < 0 ? pos : firstSplitterLine;
+                    }
+                    prevSplitterBlock = splitterBlock;
+                    prevBlank = false;
+                }
+
+                char c = src.charAt(pos);
+                if (c == '\n') {
+                    lineStart = true;
+                    pos++;
+                } else if (c == '`' && pos + CODE_SEG.length() <= lastCodeSeg && regionMatches(src, pos, CODE_SEG)) {
+                    // code-seg (only if it will be closed)
+                    pos = indexOf(src, CODE_SEG, pos + CODE_SEG.length()) + CODE_SEG.length();
+                } else if (c == '<' && regionMatches(src, pos, JSH_START)) {
+                    if (lastJshEnd >= pos + JSH_START.length()) {
+                        pos = indexOf(src, JSH_END, pos + JSH_START.length()) + JSH_END.length();
+                    } else {
+                        // no end behind: escape it
+                        replace(pos, pos + 1, "&lt;");
+                        unclosedDirectives++;
+                        firstUnclosedDirective = firstUnclosedDirective < 0 ? pos : firstUnclosedDirective;
+                        pos += JSH_START.length();
+                    }
+                } else if (c == '\\') {
+                    // escaped char
+                    pos += pos + 1 < len && src.charAt(pos + 1) != '\n' ? 2 : 1;
+                } else if (c == '[') {
+                    openBrackets++;
+                    bracketDepth = Math.max(bracketDepth, openBrackets);
+                    pos++;
+                } else if (c == ']') {
+                    openBrackets = Math.max(0, openBrackets - 1);
+                    pos++;
+                } else if (c == '*' || c == '_') {
+                    int runEnd = pos + 1;
+                    while (runEnd < len && src.charAt(runEnd) == c) {
+                        runEnd++;
+                    }
+                    boolean closer = pos > 0 && !Character.isWhitespace(src.charAt(pos - 1));
+                    boolean opener = runEnd < len && !Character.isWhitespace(src.charAt(runEnd));
+                    if (closer && openEmphasis > 0) {
+                        openEmphasis--;
+                    } else if (opener) {
+                        openEmphasis++;
+                    }
+                    pos = runEnd;
+                } else {
+                    pos++;
+                }
+            }
+            endParagraph(len);
+        }
+
+        /**
+         * check the counters of the paragraph and reset them
+         * @param end                end of the paragraph
+         */
+        protected void endParagraph(int end) {
+            if (openBrackets > maxOpenBrackets) {
+                findings.add(new Finding(Reason.OPEN_BRACKETS, paragraphStart, openBrackets));
+                safePath = true;
+            }
+            if (bracketDepth > maxBracketDepth) {
+                findings.add(new Finding(Reason.NESTED_BRACKETS, paragraphStart, bracketDepth));
+                safePath = true;
+            }
+            if (openEmphasis > maxOpenEmphasis) {
+                findings.add(new Finding(Reason.OPEN_EMPHASIS, paragraphStart, openEmphasis));
+                safePath = true;
+            }
+            openBrackets = 0;
+            bracketDepth = 0;
+            openEmphasis = 0;
+            paragraphStart = end + 1;
+        }
+
+        /**
+         * check if the line is a splitter-line "label :|: value" which can't be another block:
+         * only lines starting with a letter or digit without indention and not numbered like "1. "
+         * @param lineStart          start of the line
+         * @param lineEnd            end of the line (position of the linebreak or end of src)
+         * @return                   true if it is a splitter-line
+         */
+        protected boolean isSplitterLine(int lineStart, int lineEnd) {
+            if (!Character.isLetterOrDigit(src.charAt(lineStart))) {
+                return false;
+            }
+            int pos = lineStart;
+            while (pos < lineEnd && Character.isDigit(src.charAt(pos))) {
+                pos++;
+            }
+            if (pos > lineStart && pos + 1 < lineEnd && src.charAt(pos) == '.'
+                    && (src.charAt(pos + 1) == ' ' || src.charAt(pos + 1) == '\t')) {
+                return false;
+            }
+            for (pos = lineStart + 1; pos + SPLITTER.length() <= lineEnd; pos++) {
+                if (regionMatches(src, pos, SPLITTER)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected boolean isBlank(int start, int end) {
+            for (int pos = start; pos < end; pos++) {
+                if (!Character.isWhitespace(src.charAt(pos))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * replace the range of the src in the rewritten src
+         * @param start              start of the range
+         * @param end                end of the range
+         * @param replacement        the replacement
+         */
+        protected void replace(int start, int end, String replacement) {
+            if (out == null) {
+                out = new StringBuilder(len + (len >> 6) + 16);
+            }
+            out.append(src, unchangedStart, start).append(replacement);
+            unchangedStart = end;
+        }
+
+        protected Result getResult() {
+            if (splitterLines > 0) {
+                findings.add(0, new Finding(Reason.SPLITTER_LINES, firstSplitterLine, splitterLines));
+            }
+            if (unclosedDirectives > 0) {
+                findings.add(0, new Finding(Reason.UNCLOSED_DIRECTIVE, firstUnclosedDirective, unclosedDirectives));
+            }
+            CharSequence res = src;
+            if (out != null) {
+                res = out.append(src, unchangedStart, len);
+            }
+            return new Result(res, findings, safePath);
+        }
+    }
+
+    /**
+     * find the char
+     * @param text                   the haystack
+     * @param c                      the needle
+     * @param from                   the position to start at
+     * @return                       the position or the length of the text if not found
+     */
+    protected static int indexOf(CharSequence text, char c, int from) {
+        for (int pos = from; pos < text.length(); pos++) {
+            if (text.charAt(pos) == c) {
+                return pos;
+            }
+        }
+        return text.length();
+    }
+
+    protected static int indexOf(CharSequence text, String needle, int from) {
+        for (int pos = from; pos + needle.length() <= text.length(); pos++) {
+            if (regionMatches(text, pos, needle)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    protected static int lastIndexOf(CharSequence text, String needle) {
+        for (int pos = text.length() - needle.length(); pos >= 0; pos--) {
+            if (regionMatches(text, pos, needle)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    protected static boolean regionMatches(CharSequence text, int pos, String needle) {
+        if (pos + needle.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < needle.length(); i++) {
+            if (text.charAt(pos + i) != needle.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * a shape found by the prescan
+     */
+    public static class Finding {
+        protected final Reason reason;
+        protected final int position;
+        protected final int count;
+
+        public Finding(Reason reason, int position, int count) {
+            this.reason = reason;
+            this.position = position;
+            this.count = count;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * get the position of the first occurrence (the start of the paragraph for the nestings)
+         * @return                   the position in the prepared src
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return reason + "(at=" + position + ", count=" + count + ")";
+        }
+    }
+
+    /**
+     * the result of the prescan
+     */
+    public static class Result {
+        protected final CharSequence source;
+        protected final List<Finding> findings;
+        protected final boolean safePath;
+
+        public Result(CharSequence source, List<Finding> findings, boolean safePath) {
+            this.source = source;
+            this.findings = findings;
+            this.safePath = safePath;
+        }
+
+        /**
+         * get the src to parse
+         * @return                   the neutralized src or the scanned src if nothing is changed
+         */
+        public CharSequence getSource() {
+            return source;
+        }
+
+        public List<Finding> getFindings() {
+            return Collections.unmodifiableList(findings);
+        }
+
+        /**
+         * check if the document should not be parsed but rendered with the fallback-renderer
+         * @return                   true for the safe path
+         */
+        public boolean isSafePath() {
+            return safePath;
+        }
+    }
+}
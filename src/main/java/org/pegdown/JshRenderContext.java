@@ -0,0 +1,122 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * the state of one rendering: configuration, element-id-allocation, metrics and outline
+ * a context must only be used for one rendering at once.
+ */
+public class JshRenderContext {
+    protected final JshConfig config;
+    protected final JshElementIdAllocator idAllocator;
+    protected String precedingOutput = "";
+    protected JshRenderListener listener = JshRenderListener.NONE;
+    protected JshRenderMetrics metrics;
+    protected JshRenderOutline outline;
+
+    public JshRenderContext(JshConfig config) {
+        this(config, new JshElementIdAllocator());
+    }
+
+    public JshRenderContext(JshConfig config, String idNamespace) {
+        this(config, new JshElementIdAllocator(idNamespace));
+    }
+
+    public JshRenderContext(JshConfig config, JshElementIdAllocator idAllocator) {
+        this.config = config;
+        this.idAllocator = idAllocator;
+    }
+
+    public JshConfig getConfig() {
+        return config;
+    }
+
+    public JshElementIdAllocator getIdAllocator() {
+        return idAllocator;
+    }
+
+    public String getPrecedingOutput() {
+        return precedingOutput;
+    }
+
+    /**
+     * set the end of the output rendered before, if only a part of a document is rendered:
+     * the serializer continues after it, so the linebreaks are the same as in the complete rendering
+     * @param precedingOutput        the end of the preceding output ("" for none)
+     */
+    public void setPrecedingOutput(String precedingOutput) {
+        this.precedingOutput = precedingOutput;
+    }
+
+    public JshRenderListener getListener() {
+        return listener;
+    }
+
+    /**
+     * set the listener for the metrics of the renderings
+     * @param listener               the listener (JshRenderListener.NONE to disable the metrics)
+     */
+    public void setListener(JshRenderListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * get the metrics of the current rendering
+     * @return                       the metrics or null if they are not collected
+     */
+    public JshRenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * start the collection of metrics if a listener is set and the collection is not started yet
+     * @param inputLength            the length of the src
+     * @return                       true if the caller started the collection and must call finishMetrics
+     */
+    public boolean startMetrics(int inputLength) {
+        if (listener == JshRenderListener.NONE || metrics != null) {
+            return false;
+        }
+        metrics = new JshRenderMetrics();
+        metrics.setInputLength(inputLength);
+        return true;
+    }
+
+    /**
+     * finish the collection of metrics and report them to the listener
+     * @param outputLength           the length of the html
+     */
+    public void finishMetrics(int outputLength) {
+        JshRenderMetrics finished = metrics;
+        metrics = null;
+        finished.setOutputLength(outputLength);
+        listener.renderFinished(this, finished);
+    }
+
+    /**
+     * get the outline to collect the elements of the rendering to
+     * @return                       the outline or null if it is not collected
+     */
+    public JshRenderOutline getOutline() {
+        return outline;
+    }
+
+    /**
+     * set the outline to collect the diagrams, headings, TOC-placeholders, togglers and containers to
+     * @param outline                the outline (null to not collect it)
+     */
+    public void setOutline(JshRenderOutline outline) {
+        this.outline = outline;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * listener for the metrics of the renderings (latency-histograms...)
+ * the metrics are only collected if the listener of the render-context is not NONE.
+ * the listener is called by the rendering threads, so it must be thread-safe.
+ */
+public interface JshRenderListener {
+    /** the listener which does nothing and disables the collection of metrics */
+    JshRenderListener NONE = new JshRenderListenerAdapter();
+
+    /**
+     * called when the parser ran into the parsing-timeout
+     * @param context            the context of the rendering
+     * @param metrics            the metrics collected so far
+     */
+    void parsingTimeout(JshRenderContext context, JshRenderMetrics metrics);
+
+    /**
+     * called when the rendering is finished
+     * @param context            the context of the rendering
+     * @param metrics            the metrics of the rendering
+     */
+    void renderFinished(JshRenderContext context, JshRenderMetrics metrics);
+}
@@ -0,0 +1,27 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * listener which does nothing: extend it to implement only some callbacks
+ */
+public class JshRenderListenerAdapter implements JshRenderListener {
+    @Override
+    public void parsingTimeout(JshRenderContext context, JshRenderMetrics metrics) {
+    }
+
+    @Override
+    public void renderFinished(JshRenderContext context, JshRenderMetrics metrics) {
+    }
+}
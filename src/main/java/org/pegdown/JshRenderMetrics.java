@@ -0,0 +1,158 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the metrics of one rendering: durations of the phases, sizes and counts
+ */
+public class JshRenderMetrics {
+    protected final long[] phaseNanos = new long[JshRenderPhase.values().length];
+    protected int inputLength;
+    protected int outputLength;
+    protected int nodeCount;
+    protected int directiveCount;
+    protected boolean parsingTimeout;
+    protected List<JshPrescanner.Finding> prescanFindings = Collections.emptyList();
+    protected boolean prescanSafePath;
+
+    /**
+     * add the duration of a phase
+     * @param phase              the phase
+     * @param nanos              the duration in ns
+     */
+    public void addPhaseNanos(JshRenderPhase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * get the duration of a phase
+     * @param phase              the phase
+     * @return                   the duration in ns (0 if the phase was not run)
+     */
+    public long getPhaseNanos(JshRenderPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * get the duration of all phases
+     * @return                   the duration in ns
+     */
+    public long getTotalNanos() {
+        long res = 0;
+        for (long nanos : phaseNanos) {
+            res += nanos;
+        }
+        return res;
+    }
+
+    public void incDirectiveCount() {
+        directiveCount++;
+    }
+
+    public int getInputLength() {
+        return inputLength;
+    }
+
+    public void setInputLength(int inputLength) {
+        this.inputLength = inputLength;
+    }
+
+    public int getOutputLength() {
+        return outputLength;
+    }
+
+    public void setOutputLength(int outputLength) {
+        this.outputLength = outputLength;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public void setNodeCount(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    public int getDirectiveCount() {
+        return directiveCount;
+    }
+
+    public boolean isParsingTimeout() {
+        return parsingTimeout;
+    }
+
+    public void setParsingTimeout(boolean parsingTimeout) {
+        this.parsingTimeout = parsingTimeout;
+    }
+
+    /**
+     * get the shapes found by the prescan
+     * @return                   the findings (empty if none)
+     */
+    public List<JshPrescanner.Finding> getPrescanFindings() {
+        return prescanFindings;
+    }
+
+    public void setPrescanFindings(List<JshPrescanner.Finding> prescanFindings) {
+        this.prescanFindings = prescanFindings;
+    }
+
+    /**
+     * check if the prescan sent the document to the safe path (fallback-renderer) without parsing it
+     * @return                   true if the document was not parsed because of the findings
+     */
+    public boolean isPrescanSafePath() {
+        return prescanSafePath;
+    }
+
+    public void setPrescanSafePath(boolean prescanSafePath) {
+        this.prescanSafePath = prescanSafePath;
+    }
+
+    /**
+     * add the metrics of a part of the rendering (chunk of a large document): the durations, counts and
+     * findings are summed up, the lengths stay the ones of the complete rendering
+     * @param part               the metrics of the part
+     */
+    public void add(JshRenderMetrics part) {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] += part.phaseNanos[i];
+        }
+        nodeCount += part.nodeCount;
+        directiveCount += part.directiveCount;
+        parsingTimeout |= part.parsingTimeout;
+        prescanSafePath |= part.prescanSafePath;
+        if (!part.prescanFindings.isEmpty()) {
+            List<JshPrescanner.Finding> findings = new ArrayList<>(prescanFindings);
+            findings.addAll(part.prescanFindings);
+            prescanFindings = findings;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder("JshRenderMetrics{");
+        for (JshRenderPhase phase : JshRenderPhase.values()) {
+            res.append(phase.name().toLowerCase()).append("=").append(phaseNanos[phase.ordinal()] / 1000).append("us, ");
+        }
+        return res.append("input=").append(inputLength).append(", output=").append(outputLength)
+                .append(", nodes=").append(nodeCount).append(", directives=").append(directiveCount)
+                .append(", timeout=").append(parsingTimeout).append(", findings=").append(prescanFindings)
+                .append(prescanSafePath ? " safePath" : "").append("}").toString();
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the structure of a rendered document collected while rendering: diagrams, headings, TOC-placeholders,
+ * togglers and containers with their element-ids, so the client needs no second parsing of the html
+ * an outline must only be used for one rendering at once.
+ */
+public class JshRenderOutline {
+    protected final List<Diagram> diagrams = new ArrayList<>();
+    protected final List<Heading> headings = new ArrayList<>();
+    protected final List<String> tocIds = new ArrayList<>();
+    protected final List<Toggler> togglers = new ArrayList<>();
+    protected final List<String> containerIds = new ArrayList<>();
+
+    /**
+     * add a diagram-block
+     * @param type                   the language-prefix of the code-block (mermaid, yaiomindmap...)
+     * @param id                     the element-id of the diagram-container
+     */
+    public void addDiagram(String type, String id) {
+        diagrams.add(new Diagram(type, id));
+    }
+
+    /**
+     * add a heading
+     * @param level                  the level 1-6
+     * @param id                     the element-id of the heading
+     * @param text                   the text of the heading (html-escaped without tags)
+     */
+    public void addHeading(int level, String id, String text) {
+        headings.add(new Heading(level, id, text));
+    }
+
+    /**
+     * add a TOC-placeholder which is filled by the client
+     * @param id                     the element-id of the toc-container
+     */
+    public void addToc(String id) {
+        tocIds.add(id);
+    }
+
+    /**
+     * add a toggler
+     * @param id                     the id of the toggler (the toggled container is md-container-id)
+     * @param type                   the type of the toggler (icon...)
+     */
+    public void addToggler(String id, String type) {
+        togglers.add(new Toggler(id, type));
+    }
+
+    /**
+     * add a container
+     * @param id                     the element-id of the container
+     */
+    public void addContainer(String id) {
+        containerIds.add(id);
+    }
+
+    /**
+     * append the elements of the outline of a following part of the document
+     * @param outline                the outline of the following part
+     */
+    public void addAll(JshRenderOutline outline) {
+        diagrams.addAll(outline.diagrams);
+        headings.addAll(outline.headings);
+        tocIds.addAll(outline.tocIds);
+        togglers.addAll(outline.togglers);
+        containerIds.addAll(outline.containerIds);
+    }
+
+    /**
+     * get the text of a part of the html without the tags (entities are kept)
+     * @param html                   the html
+     * @param start                  start of the part
+     * @param end                    end of the part
+     * @return                       the trimmed text
+     */
+    public static String extractText(CharSequence html, int start, int end) {
+        StringBuilder text = new StringBuilder();
+        boolean inTag = false;
+        for (int pos = start; pos < end; pos++) {
+            char c = html.charAt(pos);
+            if (c == '<') {
+                inTag = true;
+            } else if (c == '>' && inTag) {
+                inTag = false;
+            } else if (!inTag) {
+                text.append(c);
+            }
+        }
+        return text.toString().trim();
+    }
+
+    public List<Diagram> getDiagrams() {
+        return Collections.unmodifiableList(diagrams);
+    }
+
+    public List<Heading> getHeadings() {
+        return Collections.unmodifiableList(headings);
+    }
+
+    public List<String> getTocIds() {
+        return Collections.unmodifiableList(tocIds);
+    }
+
+    public List<Toggler> getTogglers() {
+        return Collections.unmodifiableList(togglers);
+    }
+
+    public List<String> getContainerIds() {
+        return Collections.unmodifiableList(containerIds);
+    }
+
+    @Override
+    public String toString() {
+        return "JshRenderOutline{diagrams=" + diagrams + ", headings=" + headings + ", tocIds=" + tocIds
+                + ", togglers=" + togglers + ", containerIds=" + containerIds + "}";
+    }
+
+    /**
+     * a diagram-block (mermaid, mindmap, plantuml...)
+     */
+    public static class Diagram {
+        protected final String type;
+        protected final String id;
+
+        public Diagram(String type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + id;
+        }
+    }
+
+    /**
+     * a heading
+     */
+    public static class Heading {
+        protected final int level;
+        protected final String id;
+        protected final String text;
+
+        public Heading(int level, String id, String text) {
+            this.level = level;
+            this.id = id;
+            this.text = text;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "h" + level + ":" + id + ":" + text;
+        }
+    }
+
+    /**
+     * a toggler for a container
+     */
+    public static class Toggler {
+        protected final String id;
+        protected final String type;
+
+        public Toggler(String id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + type;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * the phases of a rendering reported to the JshRenderListener
+ */
+public enum JshRenderPhase {
+    /** escape the src and prepare it for the parser */
+    PREPARE,
+    /** scan the prepared src for pathological shapes */
+    PRESCAN,
+    /** parse the markdown into the ast */
+    PARSE,
+    /** serialize the ast to html */
+    SERIALIZE,
+    /** postprocess the html (heading-ids, replacements) */
+    POST_PROCESS,
+    /** render with the fallback-renderer after a parsing-timeout */
+    FALLBACK
+}
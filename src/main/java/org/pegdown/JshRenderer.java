@@ -13,117 +13,169 @@
  */
 package org.pegdown;
 
-import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.HashMap;
-import java.util.regex.Matcher;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 public class JshRenderer {
 
     private static final org.apache.log4j.Logger LOGGER = org.apache.log4j.Logger.getLogger(JshRenderer.class);
 
-    protected HashMap<String, HashMap<String,  String>> allTagStyles = new HashMap<>();
-    protected int nextTocId = 1;
+    protected JshStyleClassTable styleClassTable = JshStyleClassTable.EMPTY;
+    protected JshRenderContext context;
     protected JshConfig config;
 
-    protected static Pattern regExpToggler = Pattern.compile("^(TOGGLER) *([-#_a-zA-Z,;0-9\\.]*?) *");
-    protected static Pattern regExpTogglerAppend = Pattern.compile("^(TOGGLER\\.AFTER|TOGGLER\\.BEFORE) *([-#_a-zA-Z,;0-9\\.: ]*?) *");
     protected static Pattern regExpSplitter = Pattern.compile("([\\s\\S]*?)(:\\|:)(.*)([\\s\\S]*)");
-    protected static Pattern regExpToc = Pattern.compile("^(TOC) *([-#_a-zA-Z,;0-9\\.]*?) *");
-    protected static Pattern regExpRuleBoxStart = Pattern.compile("^(BOX\\.INFO|BOX\\.WARN|BOX\\.ALERT|BOX|CONTAINER|STYLE?) *([#-_a-zA-Z,;0-9\\.: ]*?) *");
-    protected static Pattern regExpRuleBoxEnd = Pattern.compile("^/(BOX\\.INFO|BOX\\.WARN|BOX\\.ALERT|BOX|CONTAINER|STYLE?) *([#-_a-zA-Z,;0-9\\.: ]*?) *");
+
+    /** the handlers for the directives by keyword */
+    public static final Map<String, JshDirectiveHandler> DEFAULT_DIRECTIVE_HANDLERS;
+    static {
+        JshDirectiveHandler boxStart = new JshDirectiveHandler(JshDirectiveHandler.BOX_PARAM_CHARS) {
+            @Override
+            public String render(JshRenderer renderer, String keyword, String param) {
+                return renderer.renderExtendedMarkdownBoxStart(keyword, param);
+            }
+        };
+        JshDirectiveHandler boxEnd = new JshDirectiveHandler(JshDirectiveHandler.BOX_PARAM_CHARS) {
+            @Override
+            public String render(JshRenderer renderer, String keyword, String param) {
+                return renderer.renderExtendedMarkdownBoxEnd(keyword.substring(1), param);
+            }
+        };
+        JshDirectiveHandler toggler = new JshDirectiveHandler(JshDirectiveHandler.TOGGLER_PARAM_CHARS) {
+            @Override
+            public String render(JshRenderer renderer, String keyword, String param) {
+                return renderer.renderExtendedMarkdownToggler(keyword, param);
+            }
+        };
+        JshDirectiveHandler togglerAppend = new JshDirectiveHandler(JshDirectiveHandler.TOGGLER_APPEND_PARAM_CHARS) {
+            @Override
+            public String render(JshRenderer renderer, String keyword, String param) {
+                return renderer.renderExtendedMarkdownTogglerAppend(keyword, param);
+            }
+        };
+        JshDirectiveHandler toc = new JshDirectiveHandler(JshDirectiveHandler.TOGGLER_PARAM_CHARS) {
+            @Override
+            public String render(JshRenderer renderer, String keyword, String param) {
+                return renderer.renderExtendedMarkdownTOC(keyword, param);
+            }
+        };
+
+        Map<String, JshDirectiveHandler> handlers = new LinkedHashMap<>();
+        for (String keyword : new String[]{"BOX.INFO", "BOX.WARN", "BOX.ALERT", "BOX", "CONTAINER", "STYLE"}) {
+            handlers.put(keyword, boxStart);
+            handlers.put("/" + keyword, boxEnd);
+        }
+        handlers.put("TOGGLER", toggler);
+        handlers.put("TOGGLER.AFTER", togglerAppend);
+        handlers.put("TOGGLER.BEFORE", togglerAppend);
+        handlers.put("TOC", toc);
+        DEFAULT_DIRECTIVE_HANDLERS = Collections.unmodifiableMap(handlers);
+    }
+
+    protected Map<String, JshDirectiveHandler> directiveHandlers = DEFAULT_DIRECTIVE_HANDLERS;
 
     public JshRenderer(JshConfig config) {
-        this.config = config;
+        this(new JshRenderContext(config));
+    }
+
+    public JshRenderer(JshRenderContext context) {
+        this.context = context;
+        this.config = context.getConfig();
     }
 
     public String renderJshNode(JshNode node) {
-        String res = "";
         String src = node.getText();
 
-        Matcher matcher;
-
-        matcher = regExpRuleBoxStart.matcher(src);
-        if (matcher.matches() && matcher.group(1) != null) {
-            res = renderExtendedMarkdownBoxStart(matcher.group(1), matcher.group(2));
-            return res;
+        // the keyword is the leading token: look it up in the table
+        int end = src.indexOf(' ');
+        String keyword = end < 0 ? src : src.substring(0, end);
+        JshDirectiveHandler handler = directiveHandlers.get(keyword);
+        if (handler == null) {
+            // keyword without blank in front of the param like "BOXmyclass"
+            keyword = findDirectiveKeyword(src);
+            if (keyword == null) {
+                return "";
+            }
+            handler = directiveHandlers.get(keyword);
         }
 
-        matcher = regExpRuleBoxEnd.matcher(src);
-        if (matcher.matches() && matcher.group(1) != null) {
-            res = renderExtendedMarkdownBoxEnd(matcher.group(1), matcher.group(2));
-            return res;
+        // the param without leading/trailing blanks
+        int start = keyword.length();
+        end = src.length();
+        while (start < end && src.charAt(start) == ' ') {
+            start++;
         }
-
-        matcher = regExpToggler.matcher(src);
-        if (matcher.matches() && matcher.group(1) != null) {
-            res = renderExtendedMarkdownToggler(matcher.group(1), matcher.group(2));
-            return res;
+        while (end > start && src.charAt(end - 1) == ' ') {
+            end--;
         }
-        matcher = regExpTogglerAppend.matcher(src);
-        if (matcher.matches() && matcher.group(1) != null) {
-            res = renderExtendedMarkdownTogglerAppend(matcher.group(1), matcher.group(2));
-            return res;
+        String param = src.substring(start, end);
+        if (!handler.isValidParam(param)) {
+            return "";
         }
 
-        matcher = regExpToc.matcher(src);
-        if (matcher.matches() && matcher.group(1) != null) {
-            res = renderExtendedMarkdownTOC(matcher.group(1), matcher.group(2));
-            return res;
+        JshRenderMetrics metrics = context.getMetrics();
+        if (metrics != null) {
+            metrics.incDirectiveCount();
         }
+        return handler.render(this, keyword, param);
+    }
 
+    /**
+     * find the longest registered keyword the src starts with
+     * @param src                the text of the directive
+     * @return                   the keyword or null if there is none
+     */
+    protected String findDirectiveKeyword(String src) {
+        String res = null;
+        for (String keyword : directiveHandlers.keySet()) {
+            if (src.startsWith(keyword) && (res == null || keyword.length() > res.length())) {
+                res = keyword;
+            }
+        }
         return res;
     }
 
+    /**
+     * register a handler for the directive with the keyword
+     * @param keyword            the keyword like "BOX" (end-directives are registered with "/BOX")
+     * @param handler            the handler for the directive
+     */
+    public void registerDirectiveHandler(String keyword, JshDirectiveHandler handler) {
+        Map<String, JshDirectiveHandler> handlers = new LinkedHashMap<>(directiveHandlers);
+        handlers.put(keyword, handler);
+        directiveHandlers = handlers;
+    }
+
     public String renderJshNodeSplitter1(JshNodeSplitter1 node) {
-        return renderExtendedMarkdownSplitter1("splitter", "", node.getText());
+        return renderExtendedMarkdownSplitter1("splitter", "", FastEncoder.encode(node.getText()));
     }
 
     public String renderJshNodeSplitter2(JshNodeSplitter2 node) {
-        return renderExtendedMarkdownSplitter2("splitter", "", node.getText());
+        return renderExtendedMarkdownSplitter2("splitter", "", FastEncoder.encode(node.getText()));
     }
 
     /*
      * services
      */
     public String genStyleClassesForTag(String tag) {
-        HashMap<String, String> styles = allTagStyles.get(tag);
-        if (MapUtils.isEmpty(styles)) {
-            return "";
-        }
-        return StringUtils.join(styles.keySet(), " ");
+        return styleClassTable.getClasses(tag);
     };
 
     public String genStyleClassAttrForTag(String tag) {
-        String styleClasses = genStyleClassesForTag(tag);
-        if (StringUtils.isEmpty(styleClasses)) {
-            return "";
-        }
-        return " class=\"" + styleClasses + "\"";
+        return styleClassTable.getClassAttr(tag);
     };
 
 
     public void initStylesClassesForTags(String prefix) {
-        String[] tags = new String[]{
-                "h1", "h2", "h3", "h4", "h5", "h6", "h7", "h8",
-                "img", "a", "p", "table", "tr", "td", "th", "tbody", "thead", "br", "li", "ul", "ol",
-                "container", "code",
-                "box", "box-ue", "box-container",
-                "infobox", "infobox-ue", "infobox-container",
-                "warnbox", "warnbox-ue", "warnbox-container",
-                "alertbox", "alertbox-ue", "alertbox-container",
-                "togglerparent", "splitter1", "splitter2"
-        };
-        for (java.lang.String tag : tags) {
-            String style = (StringUtils.isNotEmpty(prefix) ? prefix : "") + "md-" + tag;
-            HashMap<String, String> tagStyles = allTagStyles.get(tag);
-            if (MapUtils.isEmpty(tagStyles)) {
-                tagStyles = new HashMap<String, String>();
-            }
-            tagStyles.put(style, style);
-            allTagStyles.put(tag, tagStyles);
+        if (styleClassTable == JshStyleClassTable.EMPTY) {
+            // use the shared precomputed table
+            styleClassTable = JshStyleClassTable.getDefault(prefix);
+        } else {
+            styleClassTable = styleClassTable.withDefaultStyles(prefix);
         }
     };
 
@@ -139,6 +191,9 @@ public class JshRenderer {
             res = "<div class=\"" + genStyleClassesForTag("box") + " " + param + "\">";
         } else if ("container".equalsIgnoreCase(type)) {
             res = "<div class=\"" + genStyleClassesForTag("container") + " md-container-" + param + "\" id=\"md-container-" + param + "\">";
+            if (context.getOutline() != null) {
+                context.getOutline().addContainer("md-container-" + param);
+            }
         } else if ("box.info".equalsIgnoreCase(type)) {
             res = renderExtendedMarkdownBoxhtmlStart("info", param);
         } else if ("box.warn".equalsIgnoreCase(type)) {
@@ -158,17 +213,8 @@ public class JshRenderer {
                     styles = params[1].split(" ");
                 }
             }
-            // set styles for all tags
-            for (String tag : tags) {
-                HashMap<String, String> tagStyles = allTagStyles.get(tag);
-                if (MapUtils.isEmpty(tagStyles)) {
-                    tagStyles = new HashMap<>();
-                }
-                for (String style : styles) {
-                    tagStyles.put(style, style);
-                }
-                allTagStyles.put(tag, tagStyles);
-            }
+            // set styles for all tags: copy-on-write of the table
+            styleClassTable = styleClassTable.withStyles(tags, styles);
         }
 
         return res;
@@ -197,14 +243,8 @@ public class JshRenderer {
                     styles = params[1].split(" ");
                 }
             }
-            // reset styles for all tags
-            for (String tag : tags) {
-                for (String style : styles) {
-                    if (allTagStyles.containsKey(tag) && allTagStyles.get(tag).containsKey(style)) {
-                        allTagStyles.get(tag).remove(style);
-                    }
-                }
-            }
+            // reset styles for all tags: copy-on-write of the table
+            styleClassTable = styleClassTable.withoutStyles(tags, styles);
         }
         return res;
     };
@@ -215,7 +255,7 @@ public class JshRenderer {
         String togglerType = "icon";
         String id = null;
         if (params.length > 0) {
-            id = params[0].replaceAll(" ", "");
+            id = StringUtils.remove(params[0], ' ');
             if (params.length > 1) {
                 togglerType = params[1];
             }
@@ -224,6 +264,9 @@ public class JshRenderer {
         if ("toggler".equalsIgnoreCase(type) && StringUtils.isNotEmpty(id)) {
             res = "<div class=\"" + genStyleClassesForTag("togglerparent") + " md-togglerparent-" + id + "\" id=\"md-togglerparent-" + id + "\"></div>" +
                     "<script>" + config.getAppBaseVarName() + ".get(\"UIToggler\").appendToggler(\".md-togglerparent-" + id + "\", \".md-container-" + id + "\", \"" + togglerType + "\");</script>";
+            if (context.getOutline() != null) {
+                context.getOutline().addToggler(id, togglerType);
+            }
         }
         return res;
     };
@@ -241,7 +284,7 @@ public class JshRenderer {
             }
 
             // split params elements:styles
-            String[] filter = params[0].replaceAll(" ", "").split(":");
+            String[] filter = StringUtils.remove(params[0], ' ').split(":");
             if (filter.length > 0) {
                 tags = filter[0].split(" ");
                 if (filter.length > 1) {
@@ -265,21 +308,23 @@ public class JshRenderer {
         String togglerType = "icon";
         String id;
         if (params.length > 0) {
-            id = params[0].replaceAll(" ", "");
+            id = StringUtils.remove(params[0], ' ');
             if (params.length > 1) {
                 togglerType = params[1];
             }
         }
         if ("toc".equalsIgnoreCase(type)) {
-            String tocId = "jsh-md-toc-container-" + nextTocId,
+            String tocId = "jsh-md-toc-container-" + context.getIdAllocator().nextId(),
                     tocElement = config.getAppBaseVarName() + ".$(\"div."+ tocId + "\")",
                     srcElement = tocElement + ".parents(\"div\")",
                     settings = "undefined";
             res = "<div class=\"jsh-md-toc-container " + tocId + "\" id=\"" + tocId + "\"></div>" +
                     "<script>" + config.getAppBaseVarName() + ".get(\"Renderer\").addTOCForBlock(" +
                     tocElement +", " + srcElement + ", " + settings + ");</script>";
+            if (context.getOutline() != null) {
+                context.getOutline().addToc(tocId);
+            }
         }
-        nextTocId++;
         return res;
     };
 
@@ -0,0 +1,191 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * immutable table of the style-classes per tag with the precomputed class-strings and class-attributes
+ *
+ * the default-table per style-prefix is shared by all renderers. changes by STYLE-directives create
+ * a copy of the table where only the changed tags are recomputed (copy-on-write).
+ */
+public class JshStyleClassTable {
+    /** the tags which get the default style-classes {prefix}md-{tag} */
+    public static final String[] DEFAULT_TAGS = new String[]{
+            "h1", "h2", "h3", "h4", "h5", "h6", "h7", "h8",
+            "img", "a", "p", "table", "tr", "td", "th", "tbody", "thead", "br", "li", "ul", "ol",
+            "container", "code",
+            "box", "box-ue", "box-container",
+            "infobox", "infobox-ue", "infobox-container",
+            "warnbox", "warnbox-ue", "warnbox-container",
+            "alertbox", "alertbox-ue", "alertbox-container",
+            "togglerparent", "splitter1", "splitter2"
+    };
+
+    /** the table without any style-classes */
+    public static final JshStyleClassTable EMPTY = new JshStyleClassTable(
+            Collections.<String, HashMap<String, String>>emptyMap(), Collections.<String, String>emptyMap(),
+            Collections.<String, String>emptyMap());
+
+    protected static final ConcurrentMap<String, JshStyleClassTable> DEFAULT_TABLES = new ConcurrentHashMap<>();
+
+    /** the style-classes per tag: the maps are never changed after the table is published */
+    protected final Map<String, HashMap<String, String>> tagStyles;
+    protected final Map<String, String> classes;
+    protected final Map<String, String> classAttrs;
+
+    protected JshStyleClassTable(Map<String, HashMap<String, String>> tagStyles, Map<String, String> classes,
+                                 Map<String, String> classAttrs) {
+        this.tagStyles = tagStyles;
+        this.classes = classes;
+        this.classAttrs = classAttrs;
+    }
+
+    /**
+     * get the shared table with the default style-classes for the prefix
+     * @param prefix             the style-prefix (null for none)
+     * @return                   the shared table
+     */
+    public static JshStyleClassTable getDefault(String prefix) {
+        String key = StringUtils.defaultString(prefix);
+        JshStyleClassTable table = DEFAULT_TABLES.get(key);
+        if (table == null) {
+            table = EMPTY.withDefaultStyles(key);
+            JshStyleClassTable existing = DEFAULT_TABLES.putIfAbsent(key, table);
+            if (existing != null) {
+                table = existing;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * get the style-classes of the tag joined by " "
+     * @param tag                the tag
+     * @return                   the classes or "" if none
+     */
+    public String getClasses(String tag) {
+        String res = classes.get(tag);
+        return res == null ? "" : res;
+    }
+
+    /**
+     * get the class-attribute of the tag like ' class="..."'
+     * @param tag                the tag
+     * @return                   the class-attribute or "" if there are no classes
+     */
+    public String getClassAttr(String tag) {
+        String res = classAttrs.get(tag);
+        return res == null ? "" : res;
+    }
+
+    /**
+     * get a table with the additional default-styles {prefix}md-{tag} for all DEFAULT_TAGS
+     * @param prefix             the style-prefix
+     * @return                   the new table
+     */
+    public JshStyleClassTable withDefaultStyles(String prefix) {
+        JshStyleClassTable res = copy();
+        for (String tag : DEFAULT_TAGS) {
+            res.addStyles(tag, new String[]{StringUtils.defaultString(prefix) + "md-" + tag});
+        }
+        return res;
+    }
+
+    /**
+     * get a table with the styles added to the tags (STYLE-directive)
+     * @param tags               the tags
+     * @param styles             the styles to add
+     * @return                   the new table
+     */
+    public JshStyleClassTable withStyles(String[] tags, String[] styles) {
+        JshStyleClassTable res = copy();
+        for (String tag : tags) {
+            res.addStyles(tag, styles);
+        }
+        return res;
+    }
+
+    /**
+     * get a table with the styles removed from the tags (/STYLE-directive)
+     * @param tags               the tags
+     * @param styles             the styles to remove
+     * @return                   the new table or this if nothing changed
+     */
+    public JshStyleClassTable withoutStyles(String[] tags, String[] styles) {
+        JshStyleClassTable res = this;
+        for (String tag : tags) {
+            for (String style : styles) {
+                HashMap<String, String> current = res.tagStyles.get(tag);
+                if (current != null && current.containsKey(style)) {
+                    if (res == this) {
+                        res = copy();
+                    }
+                    HashMap<String, String> changed = copyStyles(current);
+                    changed.remove(style);
+                    res.setTagStyles(tag, changed);
+                }
+            }
+        }
+        return res;
+    }
+
+    protected JshStyleClassTable copy() {
+        return new JshStyleClassTable(new HashMap<>(tagStyles), new HashMap<>(classes), new HashMap<>(classAttrs));
+    }
+
+    protected void addStyles(String tag, String[] styles) {
+        HashMap<String, String> current = tagStyles.get(tag);
+        HashMap<String, String> changed = copyStyles(current);
+        for (String style : styles) {
+            changed.put(style, style);
+        }
+        setTagStyles(tag, changed);
+    }
+
+    /**
+     * copy the styles by single puts: so the copy grows like the original map and keeps its iteration-order
+     * (the copy-constructor would size the map by the count of entries)
+     * @param styles             the styles to copy (might be null)
+     * @return                   the copy
+     */
+    protected static HashMap<String, String> copyStyles(Map<String, String> styles) {
+        HashMap<String, String> res = new HashMap<>();
+        if (styles != null) {
+            for (Map.Entry<String, String> entry : styles.entrySet()) {
+                res.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return res;
+    }
+
+    protected void setTagStyles(String tag, HashMap<String, String> styles) {
+        tagStyles.put(tag, styles);
+        String joined = StringUtils.join(styles.keySet(), " ");
+        if (StringUtils.isEmpty(joined)) {
+            classes.remove(tag);
+            classAttrs.remove(tag);
+            return;
+        }
+        classes.put(tag, joined);
+        classAttrs.put(tag, " class=\"" + joined + "\"");
+    }
+}
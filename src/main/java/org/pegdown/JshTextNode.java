@@ -0,0 +1,93 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.parboiled.buffers.InputBuffer;
+import org.pegdown.ast.TextNode;
+import org.pegdown.ast.Visitor;
+
+/**
+ * node for the extended jsh-syntax which can be a flyweight: in flyweight-mode the parser creates it
+ * with offsets into its input-buffer and the text is only extracted when the renderer asks for it.
+ * all nodes of a document share the input-buffer, so the ast holds the src once instead of copies of
+ * the texts: this pays off for documents with many directives.
+ * the nodes are TextNodes like before, so visitors which handle visit(TextNode) still get them: the
+ * buffer of the TextNode stays empty, getText and append work on the offsets or the extracted text.
+ */
+public abstract class JshTextNode extends TextNode {
+    protected InputBuffer inputBuffer;
+    protected int textStart;
+    protected int textEnd;
+    protected String text;
+
+    /**
+     * create the node with an extracted text
+     * @param text               the text
+     */
+    public JshTextNode(String text) {
+        super("");
+        this.inputBuffer = null;
+        this.textStart = 0;
+        this.textEnd = text.length();
+        this.text = text;
+    }
+
+    /**
+     * create the node for the text in the input-buffer of the parser
+     * @param inputBuffer        the input-buffer of the parser
+     * @param start              start of the text in the buffer
+     * @param end                end of the text in the buffer
+     * @param trim               remove leading and trailing whitespace like String.trim
+     * @param flyweight          only hold the offsets into the buffer (true) or extract the text now (false)
+     */
+    public JshTextNode(InputBuffer inputBuffer, int start, int end, boolean trim, boolean flyweight) {
+        super("");
+        if (trim) {
+            while (start < end && inputBuffer.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && inputBuffer.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+        this.inputBuffer = flyweight ? inputBuffer : null;
+        this.textStart = start;
+        this.textEnd = end;
+        this.text = flyweight ? null : inputBuffer.extract(start, end);
+    }
+
+    /**
+     * get the text: extracted from the input-buffer on every call
+     * @return                   the text
+     */
+    @Override
+    public String getText() {
+        return text != null ? text : inputBuffer.extract(textStart, textEnd);
+    }
+
+    /**
+     * append the text: a flyweight is extracted from the input-buffer before
+     * @param text               the text to append
+     */
+    @Override
+    public void append(String text) {
+        this.text = getText() + text;
+        this.inputBuffer = null;
+    }
+
+    @Override
+    public void accept(Visitor visitor) {
+        visitor.visit((TextNode) this);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * builds the static TOCs of a document (JshTocMode.SERVER): the headings and the positions of the
+ * TOC-placeholders are collected while serializing and the TOCs are filled in afterwards, so TOCs in front
+ * of the headings contain them too
+ * a builder must only be used for one rendering at once.
+ */
+public class JshTocBuilder {
+    protected final List<JshRenderOutline.Heading> headings = new ArrayList<>();
+    protected final List<Integer> placeholders = new ArrayList<>();
+
+    /**
+     * add a heading
+     * @param level                  the level 1-6
+     * @param id                     the element-id of the heading
+     * @param text                   the text of the heading (html-escaped without tags)
+     */
+    public void addHeading(int level, String id, String text) {
+        headings.add(new JshRenderOutline.Heading(level, id, text));
+    }
+
+    /**
+     * add a placeholder for a TOC
+     * @param position               the position in the html to insert the TOC at
+     */
+    public void addPlaceholder(int position) {
+        placeholders.add(position);
+    }
+
+    /**
+     * fill in the TOCs at the placeholders: from the last to the first so the positions stay valid
+     * @param html                   the html with the placeholders
+     */
+    public void fillPlaceholders(StringBuilder html) {
+        if (placeholders.isEmpty()) {
+            return;
+        }
+        String toc = renderToc();
+        for (int i = placeholders.size() - 1; i >= 0; i--) {
+            html.insert(placeholders.get(i).intValue(), toc);
+        }
+    }
+
+    /**
+     * render the headings as nested lists of links: a deeper level opens a list in the current item,
+     * a higher level closes the lists up to its level
+     * @return                       the html of the TOC or "" if there are no headings
+     */
+    public String renderToc() {
+        StringBuilder res = new StringBuilder();
+        List<Integer> levels = new ArrayList<>();
+        for (JshRenderOutline.Heading heading : headings) {
+            int level = heading.getLevel();
+            if (levels.isEmpty() || level > levels.get(levels.size() - 1)) {
+                res.append("<ul class=\"jsh-md-toc\">");
+                levels.add(level);
+            } else {
+                res.append("</li>");
+                while (levels.size() > 1 && level < levels.get(levels.size() - 1)
+                        && level <= levels.get(levels.size() - 2)) {
+                    levels.remove(levels.size() - 1);
+                    res.append("</ul></li>");
+                }
+            }
+            res.append("<li><a href=\"#").append(heading.getId()).append("\">").append(heading.getText())
+                    .append("</a>");
+        }
+        for (int i = levels.size(); i > 0; i--) {
+            res.append("</li></ul>");
+        }
+        return res.toString();
+    }
+}
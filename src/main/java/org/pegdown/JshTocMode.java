@@ -0,0 +1,24 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+/**
+ * the rendering of the TOC-directive
+ */
+public enum JshTocMode {
+    /** empty container and a script which builds the TOC in the browser (addTOCForBlock) */
+    CLIENT,
+    /** static nested lists of the headings of the document, filled in after the serialization */
+    SERVER
+}
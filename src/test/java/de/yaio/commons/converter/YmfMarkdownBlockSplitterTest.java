@@ -0,0 +1,53 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * the reference-definitions of the splitter
+ */
+public class YmfMarkdownBlockSplitterTest {
+
+    @Test
+    public void testExtractDefinitionMap() {
+        YmfMarkdownBlockSplitter splitter = new YmfMarkdownBlockSplitter();
+        Map<String, String> definitions = splitter.extractDefinitionMap(
+                "[ ] task\n[x] done\n[a]: http://a\n  [B b]: http://b \"Title\"\n[c][d]: http://no\n"
+                + "[]: http://no\n[e] : http://no\n[f]:\n```\n[g]: http://code\n```\n[h]: http://h");
+        assertEquals("[a, bb, h]", definitions.keySet().toString());
+        assertEquals("[a]: http://a\n\n", definitions.get("a"));
+        assertEquals("  [B b]: http://b \"Title\"\n\n", definitions.get("bb"));
+        assertEquals("[h]: http://h\n\n", definitions.get("h"));
+    }
+
+    @Test(timeout = 10000)
+    public void testExtractDefinitionMapOfLargeChecklist() {
+        // every line starts with "[" but is no definition: the search for "]:" must stay in the line
+        StringBuilder src = new StringBuilder();
+        for (int i = 0; src.length() < 2 * 1024 * 1024; i++) {
+            src.append(i % 2 == 0 ? "[ ] task " : "[x] done ").append(i).append('\n');
+        }
+        src.append("\n[ref]: http://ref\n");
+
+        YmfMarkdownBlockSplitter splitter = new YmfMarkdownBlockSplitter();
+        Map<String, String> definitions = splitter.extractDefinitionMap(src.toString());
+        assertEquals(1, definitions.size());
+        assertEquals("[ref]: http://ref\n\n", definitions.get("ref"));
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.junit.Test;
+import org.pegdown.JshConfig;
+import org.pegdown.JshRenderContext;
+import org.pegdown.JshRenderListenerAdapter;
+import org.pegdown.JshRenderMetrics;
+import org.pegdown.JshRenderOutline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the chunked rendering
+ */
+public class YmfMarkdownChunkedRendererTest {
+    protected final YmfMarkdownProviderGoldenTest golden = new YmfMarkdownProviderGoldenTest();
+
+    @Test
+    public void testChunkedHtmlEqualsCompleteRendering() throws IOException {
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        YmfMarkdownChunkedRenderer renderer = new YmfMarkdownChunkedRenderer(provider, 2);
+        renderer.setChunkSize(100);
+        try {
+            for (String name : YmfMarkdownProviderGoldenTest.GOLDEN_NAMES) {
+                String src = golden.readGolden(name + ".md");
+
+                StringBuilder html = new StringBuilder();
+                assertTrue(name, renderer.convertMarkdownToHtml(new JshConfig(), src, "ns_", html));
+                assertEquals(name, provider.convertMarkdownToHtml(new JshConfig(), src, "ns_"), html.toString());
+
+                // with outline (heading-ids)
+                JshRenderOutline outline = new JshRenderOutline();
+                StringBuilder expected = new StringBuilder();
+                JshRenderContext context = provider.createRenderContext(new JshConfig(), "ns_");
+                context.setOutline(outline);
+                assertTrue(name, provider.renderMarkdownToHtml(context, src, expected));
+                JshRenderOutline chunkedOutline = new JshRenderOutline();
+                html.setLength(0);
+                assertTrue(name, renderer.convertMarkdownToHtml(new JshConfig(), src, "ns_", html, chunkedOutline));
+                assertEquals(name, expected.toString(), html.toString());
+                assertEquals(name, outline.toString(), chunkedOutline.toString());
+            }
+        } finally {
+            renderer.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLargeChecklist() throws IOException {
+        // every line starts with "[" but is no definition: the definitions are extracted in linear time
+        StringBuilder src = new StringBuilder();
+        for (int i = 0; src.length() < 512 * 1024; i++) {
+            if (i % 50 == 0) {
+                src.append("\n## tasks ").append(i).append("\n\n");
+            }
+            src.append(i % 2 == 0 ? "- [ ] task " : "- [x] done ").append(i).append('\n');
+        }
+        src.append("\nsee [the ref][ref]\n\n[ref]: http://ref\n");
+
+        YmfMarkdownChunkedRenderer renderer = new YmfMarkdownChunkedRenderer(new YmfMarkdownProvider(), 2);
+        try {
+            StringBuilder html = new StringBuilder();
+            assertTrue(renderer.convertMarkdownToHtml(new JshConfig(), src.toString(), "ns_", html));
+            assertTrue(renderer.splitChunks(src.toString()).size() > 1);
+            assertTrue(html.indexOf("href=\"http://ref\">the ref</a>") >= 0);
+        } finally {
+            renderer.shutdown();
+        }
+    }
+
+    @Test
+    public void testMetricsAreReportedOncePerDocument() throws IOException {
+        final List<JshRenderMetrics> reports = Collections.synchronizedList(new ArrayList<JshRenderMetrics>());
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        provider.setRenderListener(new JshRenderListenerAdapter() {
+            @Override
+            public void renderFinished(JshRenderContext context, JshRenderMetrics metrics) {
+                reports.add(metrics);
+            }
+        });
+        YmfMarkdownChunkedRenderer renderer = new YmfMarkdownChunkedRenderer(provider, 2);
+        renderer.setChunkSize(100);
+        try {
+            String src = golden.readGolden("01-basic.md");
+            StringBuilder html = new StringBuilder();
+            assertTrue(renderer.convertMarkdownToHtml(new JshConfig(), src, "ns_", html));
+            assertTrue(renderer.splitChunks(src).size() > 1);
+            assertEquals(1, reports.size());
+            assertEquals(src.length(), reports.get(0).getInputLength());
+            assertEquals(html.length(), reports.get(0).getOutputLength());
+            assertTrue(reports.get(0).getNodeCount() > 0);
+        } finally {
+            renderer.shutdown();
+        }
+    }
+}
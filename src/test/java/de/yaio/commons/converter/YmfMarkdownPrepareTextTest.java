@@ -0,0 +1,102 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import de.yaio.commons.data.DataUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * compare the one-pass prepareTextForMarkdownBuffer with the former regex-implementation
+ */
+public class YmfMarkdownPrepareTextTest {
+    /** the tokens the random texts are built of: code-segs, linebreaks, blanks and the unescaped tags */
+    protected static final String[] TOKENS = new String[]{
+            "```", "\n", "\r\n", "\n\r", "\r", " ", "\t", "<br>", "<!---", "--->", "---", "-", "<", ">",
+            "&gt;", "&", "a", "b c", "…"};
+
+    @Test
+    public void testPrepareTextLikeRegexImplementation() {
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        Random random = new Random(4711);
+        for (int round = 0; round < 20000; round++) {
+            StringBuilder src = new StringBuilder();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                src.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String descText = src.toString();
+            String expected = prepareTextByRegex(descText);
+            assertEquals(escape(descText), escape(expected),
+                    escape(provider.prepareTextForMarkdownBuffer(descText, false).toString()));
+            assertEquals(escape(descText), escape(expected.replace("…", "...")),
+                    escape(provider.prepareTextForMarkdownBuffer(descText, true).toString()));
+        }
+    }
+
+    @Test
+    public void testPrepareTextCodeSegs() {
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        assertEquals("a<br>b ```\ncode\n.\n.\nx &lt;b&gt;\n``` <!--- c ---> ```open\n\n",
+                provider.prepareTextForMarkdown("a<br>b ```\r\ncode\n\n \t\nx <b>\n``` <!--- c ---> ```open\n\n"));
+    }
+
+    /**
+     * the former implementation with substring and regexes: the empty lines in code-segs are replaced until
+     * there are no more, because the regex skipped a blank line directly after an empty line
+     */
+    protected String prepareTextByRegex(final String descText) {
+        String newDescText = "";
+        String newDescTextRest = DataUtils.htmlEscapeTextLazy(descText);
+        newDescTextRest = newDescTextRest.replaceAll("\\&lt;br\\&gt;", "<br>");
+        newDescTextRest = newDescTextRest.replaceAll("\\&lt;\\!---", "<!---");
+        newDescTextRest = newDescTextRest.replaceAll("---\\&gt;", "--->");
+
+        int codeStart = newDescTextRest.indexOf("```");
+        while (codeStart >= 0) {
+            newDescText += newDescTextRest.substring(0, codeStart + 3);
+            newDescTextRest = newDescTextRest.substring(codeStart + 3);
+
+            int codeEnd = newDescTextRest.indexOf("```");
+            if (codeEnd >= 0) {
+                String code = newDescTextRest.substring(0, codeEnd);
+                newDescTextRest = newDescTextRest.substring(codeEnd);
+
+                code = code.replaceAll("\r\n", "\n");
+                code = code.replaceAll("\n\r", "\n");
+                String replaced;
+                do {
+                    replaced = code;
+                    code = code.replaceAll("\n[ \t]*\n", "\n.\n");
+                    code = code.replaceAll("\n\n", "\n.\n");
+                } while (!code.equals(replaced));
+
+                newDescText += code;
+                newDescText += newDescTextRest.substring(0, 3);
+                newDescTextRest = newDescTextRest.substring(3);
+            }
+            codeStart = newDescTextRest.indexOf("```");
+        }
+        newDescText += newDescTextRest;
+
+        return newDescText;
+    }
+
+    protected String escape(String text) {
+        return text.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.junit.Test;
+import org.pegdown.JshConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * compare the html of the golden corpus with the expected html: the pairs are
+ * golden/NAME.md and golden/NAME.html (rendered with the id-namespace "")
+ */
+public class YmfMarkdownProviderGoldenTest {
+    protected static final String[] GOLDEN_NAMES = new String[]{
+            "01-basic", "02-code", "03-jsh", "04-abbr", "05-misc", "06-chars", "07-lt", "08-refs"};
+
+    @Test
+    public void testConvertMarkdownToHtml() throws IOException {
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        for (String name : GOLDEN_NAMES) {
+            String html = provider.convertMarkdownToHtml(new JshConfig(), readGolden(name + ".md"), "");
+            assertEquals(name, readGolden(name + ".html"), html);
+        }
+    }
+
+    @Test
+    public void testConvertMarkdownToHtmlAppendable() throws IOException {
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        for (String name : GOLDEN_NAMES) {
+            StringBuilder html = new StringBuilder();
+            provider.convertMarkdownToHtml(new JshConfig(), readGolden(name + ".md"), "", html);
+            assertEquals(name, readGolden(name + ".html"), html.toString());
+        }
+    }
+
+    protected String readGolden(String fileName) throws IOException {
+        InputStream in = getClass().getResourceAsStream("golden/" + fileName);
+        assertNotNull(fileName, in);
+        StringBuilder res = new StringBuilder();
+        try (Reader reader = new InputStreamReader(in, "UTF-8")) {
+            char[] buffer = new char[4096];
+            int count;
+            while ((count = reader.read(buffer)) >= 0) {
+                res.append(buffer, 0, count);
+            }
+        }
+        return res.toString();
+    }
+}
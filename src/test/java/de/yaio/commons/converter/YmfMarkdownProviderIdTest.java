@@ -0,0 +1,115 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.junit.Test;
+import org.pegdown.JshConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the element-ids: identical src gives identical html, parallel renderings don't share ids
+ */
+public class YmfMarkdownProviderIdTest {
+    protected static final Pattern ID_PATTERN = Pattern.compile(" id=\"([^\"]*)\"");
+
+    protected final YmfMarkdownProviderGoldenTest golden = new YmfMarkdownProviderGoldenTest();
+
+    @Test
+    public void testIdenticalSrcGivesIdenticalHtml() throws IOException {
+        String src = golden.readGolden("02-code.md");
+        String html = new YmfMarkdownProvider().convertMarkdownToHtml(new JshConfig(), src, "ns_");
+        assertEquals(html, new YmfMarkdownProvider().convertMarkdownToHtml(new JshConfig(), src, "ns_"));
+
+        // the default namespace is derived from the content
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        String defaultHtml = provider.convertMarkdownToHtml(new JshConfig(), src);
+        assertEquals(defaultHtml, provider.convertMarkdownToHtml(new JshConfig(), src));
+        assertEquals(defaultHtml, new YmfMarkdownProvider().convertMarkdownToHtml(new JshConfig(), src));
+        assertEquals(provider.createIdNamespace(src), provider.createIdNamespace(src));
+        assertNotEquals(provider.createIdNamespace(src), provider.createIdNamespace(src + "\n"));
+    }
+
+    @Test
+    public void testRenderCacheHitsWithoutNamespace() throws IOException {
+        YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        YmfMarkdownCache<String> cache = new YmfMarkdownCache<>(1024 * 1024, 60000);
+        provider.setRenderCache(cache);
+        String src = golden.readGolden("01-basic.md");
+        String html = provider.convertMarkdownToHtml(new JshConfig(), src);
+        assertEquals(html, provider.convertMarkdownToHtml(new JshConfig(), src));
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testParallelRenderingsGetNoDuplicateIds() throws Exception {
+        final YmfMarkdownProvider provider = new YmfMarkdownProvider();
+        final String src = golden.readGolden("02-code.md") + "\n\n" + golden.readGolden("03-jsh.md");
+        final String expected = provider.convertMarkdownToHtml(new JshConfig(), src, "ns_");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final String idNamespace = "ns" + i + "_";
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return provider.convertMarkdownToHtml(new JshConfig(), src, idNamespace);
+                    }
+                }));
+            }
+
+            Set<String> ids = new HashSet<>();
+            for (int i = 0; i < futures.size(); i++) {
+                String html = getResult(futures.get(i));
+                assertEquals(expected.replace("ns_", "ns" + i + "_"), html);
+                // the allocated ids contain the namespace, the others are given by the src (CONTAINER-names...)
+                Matcher matcher = ID_PATTERN.matcher(html);
+                while (matcher.find()) {
+                    if (matcher.group(1).contains("ns" + i + "_")) {
+                        assertTrue("duplicate id " + matcher.group(1), ids.add(matcher.group(1)));
+                    }
+                }
+            }
+            assertFalse(ids.isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    protected String getResult(Future<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+}
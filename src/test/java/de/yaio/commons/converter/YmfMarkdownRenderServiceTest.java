@@ -0,0 +1,47 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package de.yaio.commons.converter;
+
+import org.junit.Test;
+import org.pegdown.JshConfig;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * the asynchronous rendering
+ */
+public class YmfMarkdownRenderServiceTest {
+    @Test
+    public void testSubmitAfterShutdownIsNoOverload() throws Exception {
+        YmfMarkdownRenderService service = new YmfMarkdownRenderService(new YmfMarkdownProvider(), 1, 1, 10);
+        service.setOverloadPolicy(YmfMarkdownRenderService.OverloadPolicy.DEGRADE);
+        assertTrue(service.submit(new JshConfig(), "# test", "ns_").get().contains("test"));
+        service.shutdown();
+        assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+
+        try {
+            service.submit(new JshConfig(), "# test", "ns_");
+            fail("submit after shutdown must be rejected");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertEquals(0, service.getRejectedCount());
+        assertEquals(0, service.getDegradedCount());
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * markdown-converter
+ *
+ * @FeatureDomain                Converter
+ * @author                       Michael Schreiner <michael.schreiner@your-it-fellow.de>
+ * @category                     markdown-services
+ * @copyright                    Copyright (c) 2016, Michael Schreiner
+ * @license                      http://mozilla.org/MPL/2.0/ Mozilla Public License 2.0
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.pegdown;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * compare the matches of the automaton with the former indexOf-loop per abbreviation
+ */
+public class JshAbbreviationMatcherTest {
+    /** few chars, so the random abbreviations overlap, nest and share prefixes and suffixes */
+    protected static final String CHARS = "aab1-Ä ";
+
+    @Test
+    public void testFindMatchesLikeIndexOfLoop() {
+        Random random = new Random(4711);
+        for (int round = 0; round < 5000; round++) {
+            Map<String, String> abbreviations = new LinkedHashMap<>();
+            int count = 1 + random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                abbreviations.put(randomText(random, 1 + random.nextInt(3)), "exp" + i);
+            }
+            JshAbbreviationMatcher matcher = new JshAbbreviationMatcher(abbreviations);
+            for (int i = 0; i < 5; i++) {
+                String text = randomText(random, random.nextInt(40));
+                assertMatches(abbreviations, matcher, text);
+            }
+        }
+    }
+
+    @Test
+    public void testFindMatchesWholeWords() {
+        Map<String, String> abbreviations = new LinkedHashMap<>();
+        abbreviations.put("HTML", "Hyper Text Markup Language");
+        abbreviations.put("HTML5", "HTML version 5");
+        abbreviations.put("W3C", "World Wide Web Consortium");
+        JshAbbreviationMatcher matcher = new JshAbbreviationMatcher(abbreviations);
+
+        assertMatches(abbreviations, matcher, "HTML and HTML5 by the W3C, not XHTML or HTMLx");
+        assertNull(matcher.findMatches("XHTML W3Cx"));
+    }
+
+    protected void assertMatches(Map<String, String> abbreviations, JshAbbreviationMatcher matcher,
+                                 String text) {
+        Map<Integer, String> expected = findMatchesByIndexOf(abbreviations, text);
+        Map<Integer, String> matches = new TreeMap<>();
+        int[] res = matcher.findMatches(text);
+        if (res != null) {
+            for (int sx = 0; sx < res.length; sx++) {
+                if (res[sx] > 0) {
+                    matches.put(sx, matcher.getEntry(res[sx] - 1).getKey());
+                }
+            }
+        }
+        assertEquals(abbreviations + " in '" + text + "'", expected, matches);
+    }
+
+    /**
+     * the former matching of the serializer: every abbreviation is searched with indexOf,
+     * at the same start the last abbreviation wins
+     */
+    protected Map<Integer, String> findMatchesByIndexOf(Map<String, String> abbreviations, String string) {
+        Map<Integer, String> expansions = new TreeMap<>();
+        for (Map.Entry<String, String> entry : abbreviations.entrySet()) {
+            String abbr = entry.getKey();
+            int ix = 0;
+            while (true) {
+                int sx = string.indexOf(abbr, ix);
+                if (sx == -1) {
+                    break;
+                }
+
+                // only allow whole word matches
+                ix = sx + abbr.length();
+                if (sx > 0 && Character.isLetterOrDigit(string.charAt(sx - 1))) {
+                    continue;
+                }
+                if (ix < string.length() && Character.isLetterOrDigit(string.charAt(ix))) {
+                    continue;
+                }
+                expansions.put(sx, abbr);
+            }
+        }
+        return expansions;
+    }
+
+    protected String randomText(Random random, int length) {
+        StringBuilder res = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            res.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return res.toString();
+    }
+}